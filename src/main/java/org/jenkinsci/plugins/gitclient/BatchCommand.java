@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.gitclient;
+
+import java.util.List;
+
+/**
+ * Records calls of {@link GitClient} methods and executes them together.
+ *
+ * <p>
+ * Calls of {@link #client()} methods are only recorded, they return null, false or zero. {@link #execute()} runs the
+ * recorded calls in order, and {@link #results()} then holds their return values. A client of a remote agent runs the
+ * whole batch with a single call over the agent channel rather than one call per method, for example:
+ *
+ * <pre>
+ * BatchCommand batch = git.batch();
+ * batch.client().hasGitRepo();
+ * batch.client().getRemoteUrl("origin");
+ * batch.client().revParse("HEAD");
+ * batch.execute();
+ * String url = (String) batch.results().get(1);
+ * </pre>
+ *
+ * <p>
+ * Commands returned by methods such as {@link GitClient#fetch_()} record the calls of their builder methods, and are
+ * recorded in the batch when their {@link GitCommand#execute()} is called. They run in the order of those calls, and
+ * their result is null:
+ *
+ * <pre>
+ * batch.client().fetch_().from(remote, refspecs).prune(true).execute();
+ * batch.client().checkout().ref("origin/master").execute();
+ * </pre>
+ *
+ * <p>
+ * The first failing call stops the batch and its exception is thrown by {@link #execute()}, later calls are not run.
+ * {@link GitClient#getRepository()} and {@link GitClient#batch()} cannot be recorded.
+ *
+ * @since 4.7.0
+ */
+public interface BatchCommand extends GitCommand {
+
+    /**
+     * client.
+     *
+     * @return client which records its method calls in this batch
+     */
+    GitClient client();
+
+    /**
+     * results.
+     *
+     * @return return values of the recorded calls in the order of the calls, null for void methods
+     * @throws java.lang.IllegalStateException if the batch has not been executed
+     */
+    List<Object> results();
+}
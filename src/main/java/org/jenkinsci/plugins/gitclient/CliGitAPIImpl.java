@@ -13,6 +13,7 @@ import hudson.Launcher.LocalLauncher;
 import hudson.Proc;
 import hudson.Util;
 import hudson.console.HyperlinkNote;
+import hudson.console.LineTransformationOutputStream;
 import hudson.model.TaskListener;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.GitException;
@@ -54,6 +55,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -70,7 +72,12 @@ import org.eclipse.jgit.lib.RepositoryBuilder;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.cgit.CatFileBatch;
+import org.jenkinsci.plugins.gitclient.cgit.CredentialFiles;
 import org.jenkinsci.plugins.gitclient.cgit.GitCommandsExecutor;
+import org.jenkinsci.plugins.gitclient.cgit.RefFiles;
+import org.jenkinsci.plugins.gitclient.cgit.SshControlMaster;
+import org.jenkinsci.plugins.gitclient.trilead.CredentialsIndex;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
 import org.kohsuke.stapler.framework.io.WriterOutputStream;
 
@@ -182,6 +189,117 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     private static final boolean USE_FORCE_FETCH =
             Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".forceFetch", "true"));
 
+    /**
+     * Constant which disables the long-lived cat-file helper process used for object lookups.
+     *
+     * <code>USE_CAT_FILE_BATCH=Boolean.valueOf(System.getProperty(CliGitAPIImpl.class.getName() + ".useCatFileBatch", "true"))</code>.
+     *
+     * Methods like revParse, validateRevision, isCommitInRepo, refExists
+     * and getTagMessage are answered by a 'git cat-file --batch-check' or
+     * 'git cat-file --batch' process which stays running between calls,
+     * rather than by forking a new git process for each lookup. If the
+     * helper process cannot answer, the regular git command is used.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.useCatFileBatch=false'
+     * to fork a git process for every lookup as in earlier releases.
+     */
+    private static final boolean USE_CAT_FILE_BATCH =
+            Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".useCatFileBatch", "true"));
+
+    /**
+     * Constant which disables reading references directly from the files of the repository.
+     *
+     * <code>USE_REF_FILES=Boolean.valueOf(System.getProperty(CliGitAPIImpl.class.getName() + ".useRefFiles", "true"))</code>.
+     *
+     * getTags, getTagNames and getRefNames read the packed-refs file and
+     * the loose reference files of the repository rather than forking
+     * 'git show-ref', 'git tag' or 'git for-each-ref'. Repositories which
+     * use reftable, another object format or a linked worktree, and
+     * patterns with character classes, are still handled by git.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.useRefFiles=false'
+     * to always list references with a git command as in earlier releases.
+     */
+    private static final boolean USE_REF_FILES =
+            Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".useRefFiles", "true"));
+
+    /**
+     * Constant which enables sharing ssh connections between git commands.
+     *
+     * <code>USE_SSH_CONTROL_MASTER=Boolean.valueOf(System.getProperty(CliGitAPIImpl.class.getName() + ".sshControlMaster", "false"))</code>.
+     *
+     * Commands which use ssh private key credentials on Unix agents pass
+     * OpenSSH ControlMaster options to ssh, so that the fetches, ls-remote
+     * calls and parallel submodule updates of a client reuse a single
+     * connection per host and credential rather than authenticating
+     * again. The connections are closed after SSH_CONTROL_PERSIST seconds
+     * without a command, when the client is closed or when the JVM exits.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.sshControlMaster=true'
+     * to share ssh connections between git commands.
+     */
+    private static final boolean USE_SSH_CONTROL_MASTER =
+            Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".sshControlMaster", "false"));
+
+    /**
+     * Constant which sets the seconds a shared ssh connection stays open after its last command.
+     *
+     * <code>SSH_CONTROL_PERSIST=Integer.getInteger(CliGitAPIImpl.class.getName() + ".sshControlPersist", 60)</code>.
+     *
+     * Only used when USE_SSH_CONTROL_MASTER is enabled.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.sshControlPersist=300'
+     * to keep shared ssh connections open for five minutes.
+     */
+    private static final int SSH_CONTROL_PERSIST =
+            Integer.getInteger(CliGitAPIImpl.class.getName() + ".sshControlPersist", 60);
+
+    /**
+     * Constant which enables reusing credential files between git commands.
+     *
+     * <code>REUSE_CREDENTIAL_FILES=Boolean.valueOf(System.getProperty(CliGitAPIImpl.class.getName() + ".reuseCredentialFiles", "false"))</code>.
+     *
+     * The private key, passphrase, user name and password files and the
+     * askpass scripts of a credential are written once per client in a
+     * private temporary directory, rather than written and deleted for
+     * every command. A submodule update with many submodules then writes
+     * them once instead of once per submodule. A file is overwritten and
+     * deleted once no command used it for CREDENTIAL_FILES_IDLE_SECONDS,
+     * when the credentials of the client are cleared or the client is
+     * closed and no command uses it any more, or when the JVM exits.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.reuseCredentialFiles=true'
+     * to reuse credential files between git commands.
+     */
+    private static final boolean REUSE_CREDENTIAL_FILES =
+            Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".reuseCredentialFiles", "false"));
+
+    /* Seconds a reused credential file is kept after the last command which used it */
+    private static final int CREDENTIAL_FILES_IDLE_SECONDS = 60;
+
+    /**
+     * Constant which asks remote repositories to filter the references they advertise.
+     *
+     * <code>USE_PROTOCOL_V2=Boolean.valueOf(System.getProperty(CliGitAPIImpl.class.getName() + ".useProtocolV2", "false"))</code>.
+     *
+     * The ls-remote calls of getRemoteReferences and getHeadRev use git
+     * protocol v2, so that the server only sends the references in the
+     * namespace requested with -h or -t. A pattern which starts with
+     * refs/heads/ or refs/tags/ selects that namespace. Servers which do
+     * not support protocol v2 advertise all references as before.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.CliGitAPIImpl.useProtocolV2=true'
+     * to let the server filter the references it advertises.
+     */
+    private static final boolean USE_PROTOCOL_V2 =
+            Boolean.parseBoolean(System.getProperty(CliGitAPIImpl.class.getName() + ".useProtocolV2", "false"));
+
+    /**
+     * Milliseconds without a lookup after which the cat-file helper process is stopped.
+     */
+    private static final long CAT_FILE_BATCH_IDLE_TIMEOUT =
+            Long.getLong(CliGitAPIImpl.class.getName() + ".catFileBatchIdleTimeout", 10000L);
+
     private static final Logger LOGGER = Logger.getLogger(CliGitAPIImpl.class.getName());
 
     private static final long serialVersionUID = 1;
@@ -193,10 +311,14 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     TaskListener listener;
     String gitExe;
     EnvVars environment;
-    private Map<String, StandardCredentials> credentials = new HashMap<>();
+    private final CredentialsIndex credentials = new CredentialsIndex();
     private StandardCredentials defaultCredentials;
     private StandardCredentials lfsCredentials;
     private final String encoding;
+    private transient CatFileBatch objectInfoBatch;
+    private transient CatFileBatch objectContentBatch;
+    private transient SshControlMaster sshControlMaster;
+    private transient CredentialFiles credentialFiles;
 
     /* If we fail some helper tool (e.g. SELinux chcon) do not make noise
      * until actually git fails. Use a TreeMap to sort by keys (timestamp).
@@ -795,6 +917,8 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             @Override
             public void execute() throws GitException, InterruptedException {
+                // Release open handles on the repository before its contents are deleted
+                close();
 
                 URIish urIish = null;
                 try {
@@ -1048,6 +1172,7 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             @Override
             public void execute() throws GitException, InterruptedException {
+                close();
                 /* Match JGit - create directory if it does not exist */
                 /* Multi-branch pipeline assumes init() creates directory */
                 File workspaceDir = new File(workspace);
@@ -1110,6 +1235,10 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public ObjectId revParse(String revName) throws GitException, InterruptedException {
+        CatFileBatch.ObjectInfo info = lookupObject(revName + "^{commit}", false);
+        if (info != null) {
+            return info.getId();
+        }
 
         String arg = sanitize(revName + "^{commit}");
         String result = launchCommand("rev-parse", arg);
@@ -1167,6 +1296,10 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
      * @throws java.lang.InterruptedException if interrupted.
      */
     public ObjectId validateRevision(String revName) throws GitException, InterruptedException {
+        CatFileBatch.ObjectInfo info = lookupObject(revName, false);
+        if (info != null) {
+            return info.getId();
+        }
         String result = launchCommand("rev-parse", "--verify", revName);
         String line = StringUtils.trimToNull(result);
         if (line == null) {
@@ -1289,6 +1422,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             @Override
             public void execute() throws GitException, InterruptedException {
                 ArgumentListBuilder args = new ArgumentListBuilder(gitExe, "whatchanged", "--no-abbrev", "-M");
+                if (RenameBudget.RENAME_LIMIT != null) {
+                    args.add("-l" + RenameBudget.RENAME_LIMIT);
+                }
                 if (isAtLeastVersion(1, 8, 3, 0)) {
                     args.add("--format=" + RAW);
                 } else {
@@ -1338,7 +1474,11 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     public List<String> showRevision(ObjectId from, ObjectId to, Boolean useRawOutput)
             throws GitException, InterruptedException {
         ArgumentListBuilder args =
-                new ArgumentListBuilder("log", "--full-history", "--no-abbrev", "--format=raw", "-M", "-m");
+                new ArgumentListBuilder("log", "--full-history", "--no-abbrev", "--format=raw", "-M");
+        if (RenameBudget.RENAME_LIMIT != null) {
+            args.add("-l" + RenameBudget.RENAME_LIMIT);
+        }
+        args.add("-m");
         if (useRawOutput) {
             args.add("--raw");
         }
@@ -1349,9 +1489,16 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             args.add("-1", to.name());
         }
 
-        StringWriter writer = new StringWriter();
-        writer.write(launchCommand(args));
-        return new ArrayList<>(Arrays.asList(writer.toString().split("\\n")));
+        List<String> lines = new ArrayList<>();
+        launchCommandLines(lines::add, args);
+        // Match String.split semantics of earlier releases: no trailing empty lines, one empty line if no output
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        if (lines.isEmpty()) {
+            lines.add("");
+        }
+        return lines;
     }
 
     /**
@@ -1972,19 +2119,41 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             prefix = common_prefix + prefix;
         }
 
-        if (workspace == null) {
+        Path tmpPath = workspaceTempDir();
+        if (tmpPath == null) {
             return createTempFileInSystemDir(prefix, suffix);
         }
+        return createTempFileIn(tmpPath, prefix, suffix);
+    }
+
+    private Path createTempFileIn(Path dir, String prefix, String suffix) throws IOException {
+        if (isWindows()) {
+            return Files.createTempFile(dir, prefix, suffix);
+        }
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+        FileAttribute<Set<PosixFilePermission>> fileAttribute = PosixFilePermissions.asFileAttribute(ownerOnly);
+        return Files.createTempFile(dir, prefix, suffix, fileAttribute);
+    }
+
+    /**
+     * Temporary directory of the workspace, if command line git can use files in it.
+     *
+     * @return temporary directory of the workspace, null if the system temporary directory needs to be used
+     */
+    @CheckForNull
+    private Path workspaceTempDir() {
+        if (workspace == null) {
+            return null;
+        }
         File workspaceTmp = new File(workspace.getAbsolutePath() + "@tmp");
         if (!workspaceTmp.isDirectory() && !workspaceTmp.mkdirs()) {
             if (!workspaceTmp.isDirectory()) {
-                return createTempFileInSystemDir(prefix, suffix);
+                return null;
             }
         }
-        Path tmpPath = Paths.get(workspaceTmp.getAbsolutePath());
         if (workspaceTmp.getAbsolutePath().contains("%")) {
             // Avoid ssh token expansion on all platforms
-            return createTempFileInSystemDir(prefix, suffix);
+            return null;
         }
         if (isWindows()) {
             /* Windows git fails its call to GIT_SSH if its absolute
@@ -1992,21 +2161,35 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
              * Use system temp dir instead of workspace temp dir.
              */
             if (workspaceTmp.getAbsolutePath().matches(".*[ ()|?*].*")) {
-                return createTempFileInSystemDir(prefix, suffix);
+                return null;
             }
-            return Files.createTempFile(tmpPath, prefix, suffix);
-        } else if (workspaceTmp.getAbsolutePath().contains("%")) {
-            /* Avoid Linux expansion of % in ssh arguments */
-            return createTempFileInSystemDir(prefix, suffix);
+            return Paths.get(workspaceTmp.getAbsolutePath());
         }
         // Unix specific
         if (workspaceTmp.getAbsolutePath().contains("`")) {
             // Avoid backquote shell expansion
-            return createTempFileInSystemDir(prefix, suffix);
+            return null;
         }
-        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
-        FileAttribute<Set<PosixFilePermission>> fileAttribute = PosixFilePermissions.asFileAttribute(ownerOnly);
-        return Files.createTempFile(tmpPath, prefix, suffix, fileAttribute);
+        return Paths.get(workspaceTmp.getAbsolutePath());
+    }
+
+    /* Private directory of the credential files reused between commands */
+    private Path createCredentialFilesDir() throws IOException {
+        String prefix = "jenkins-gitclient-cred";
+        Path tmpPath = workspaceTempDir();
+        if (isWindows()) {
+            return tmpPath == null ? Files.createTempDirectory(prefix) : Files.createTempDirectory(tmpPath, prefix);
+        }
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        FileAttribute<Set<PosixFilePermission>> dirAttribute = PosixFilePermissions.asFileAttribute(ownerOnly);
+        return tmpPath == null
+                ? Files.createTempDirectory(prefix, dirAttribute)
+                : Files.createTempDirectory(tmpPath, prefix, dirAttribute);
+    }
+
+    /* Credential file in dir, or a temporary file of the command if dir is null */
+    private Path createCredentialFile(@CheckForNull Path dir, String prefix, String suffix) throws IOException {
+        return dir == null ? createTempFile(prefix, suffix) : createTempFileIn(dir, prefix, suffix);
     }
 
     private void deleteTempFile(Path tempFile) {
@@ -2039,6 +2222,261 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         }
     }
 
+    private synchronized CatFileBatch objectInfoBatch() {
+        if (objectInfoBatch == null) {
+            objectInfoBatch = newCatFileBatch(false);
+        }
+        return objectInfoBatch;
+    }
+
+    private synchronized CatFileBatch objectContentBatch() {
+        if (objectContentBatch == null) {
+            objectContentBatch = newCatFileBatch(true);
+        }
+        return objectContentBatch;
+    }
+
+    private CatFileBatch newCatFileBatch(boolean withContent) {
+        List<String> gitCommand = new ArrayList<>();
+        gitCommand.add(gitExe);
+        gitCommand.addAll(extraGitCommandArguments);
+        return new CatFileBatch(
+                gitCommand,
+                workspace,
+                new EnvVars(environment),
+                withContent,
+                CAT_FILE_BATCH_IDLE_TIMEOUT,
+                TimeUnit.MINUTES.toMillis(TIMEOUT));
+    }
+
+    /**
+     * Look up an object through the long-lived cat-file process.
+     *
+     * @param objectName any object name accepted by git rev-parse
+     * @param withContent true if the content of the object is needed
+     * @return object details, or null if the object is missing or the cat-file process could not answer.
+     *     Callers then fall back to a regular git command, which also reports errors as earlier releases did.
+     */
+    private @CheckForNull CatFileBatch.ObjectInfo lookupObject(String objectName, boolean withContent) {
+        if (!USE_CAT_FILE_BATCH || objectName.startsWith("-")) {
+            return null;
+        }
+        try {
+            return (withContent ? objectContentBatch() : objectInfoBatch()).lookup(objectName);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "cat-file lookup of " + objectName + " failed, falling back to git command", e);
+            return null;
+        }
+    }
+
+    /**
+     * Read references from the files of the repository.
+     *
+     * @param prefix prefix of the reference names
+     * @param pattern glob pattern the caller matches with the references, may be null
+     * @return references by name, or null if git must list the references
+     */
+    private @CheckForNull Map<String, RefFiles.Entry> readRefFiles(String prefix, @CheckForNull String pattern) {
+        if (!USE_REF_FILES
+                || environment.containsKey("GIT_DIR")
+                || environment.containsKey("GIT_COMMON_DIR")
+                || (pattern != null && (pattern.indexOf('[') >= 0 || pattern.indexOf('\\') >= 0))) {
+            return null;
+        }
+        RefFiles refFiles = RefFiles.forWorkTree(workspace);
+        if (refFiles == null) {
+            return null;
+        }
+        try {
+            return refFiles.read(prefix);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Reading references of " + workspace + " failed, falling back to git command", e);
+            return null;
+        }
+    }
+
+    /* Tags as reported by 'git show-ref --tags -d', or null if git must list them */
+    private @CheckForNull Set<GitObject> tagsFromRefFiles() {
+        Map<String, RefFiles.Entry> refs = readRefFiles(Constants.R_TAGS, null);
+        if (refs == null) {
+            return null;
+        }
+        Set<GitObject> tags = new HashSet<>(refs.size());
+        for (Map.Entry<String, RefFiles.Entry> ref : refs.entrySet()) {
+            RefFiles.Entry entry = ref.getValue();
+            ObjectId objectId = entry.getObjectId();
+            ObjectId id = entry.getPeeledObjectId();
+            if (id == null && entry.isPeeled()) {
+                id = objectId;
+            }
+            if (id == null && objectId != null) {
+                /* Loose tag, the object must be read to know whether it is an annotated tag */
+                CatFileBatch.ObjectInfo info = lookupObject(objectId.name() + "^{}", false);
+                id = info == null ? null : info.getId();
+            }
+            if (id == null) {
+                return null;
+            }
+            tags.add(new GitObject(ref.getKey().substring(Constants.R_TAGS.length()), id));
+        }
+        return tags;
+    }
+
+    /* Reference names as reported by 'git for-each-ref', or null if git must list them */
+    private @CheckForNull Set<String> refNamesFromRefFiles(String refPrefix) {
+        if (refPrefix.indexOf('*') >= 0 || refPrefix.indexOf('?') >= 0) {
+            return null;
+        }
+        Map<String, RefFiles.Entry> refs = readRefFiles(refPrefix, refPrefix);
+        if (refs == null) {
+            return null;
+        }
+        Map<String, RefFiles.Entry> allRefs = null;
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, RefFiles.Entry> ref : refs.entrySet()) {
+            String name = ref.getKey();
+            /* for-each-ref matches a literal pattern completely or up to a slash */
+            if (!name.equals(refPrefix)
+                    && !refPrefix.endsWith("/")
+                    && name.charAt(refPrefix.length()) != '/') {
+                continue;
+            }
+            String target = ref.getValue().getTarget();
+            if (target != null) {
+                /* for-each-ref skips symbolic references to missing references */
+                if (allRefs == null) {
+                    allRefs = readRefFiles(Constants.R_REFS, null);
+                    if (allRefs == null) {
+                        return null;
+                    }
+                }
+                if (!allRefs.containsKey(target)) {
+                    continue;
+                }
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /* Regular expression for a 'git tag -l' pattern, in which '*' also matches '/' */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+
+    /* Message of a tag or commit object as shown by 'git tag -n', without the object header or tag signature */
+    private static String objectMessage(byte[] content, String type) {
+        String text = new String(content, StandardCharsets.UTF_8);
+        int bodyStart = text.indexOf("\n\n");
+        if (bodyStart < 0) {
+            return "";
+        }
+        String message = text.substring(bodyStart + 2);
+        if (Constants.TYPE_TAG.equals(type)) {
+            Matcher signature = TAG_SIGNATURE_PATTERN.matcher(message);
+            if (signature.find()) {
+                message = message.substring(0, signature.start());
+            }
+        }
+        return message;
+    }
+
+    private static final Pattern TAG_SIGNATURE_PATTERN = Pattern.compile("(?m)^-----BEGIN [A-Z ]*SIGNATURE-----$");
+
+    /**
+     * Stops the helper processes used for object lookups and the shared ssh
+     * connections, and wipes the reused credential files. They are started
+     * and written again on demand if this client is used after it has been
+     * closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (objectInfoBatch != null) {
+            objectInfoBatch.close();
+        }
+        if (objectContentBatch != null) {
+            objectContentBatch.close();
+        }
+        if (sshControlMaster != null) {
+            sshControlMaster.close();
+        }
+        if (credentialFiles != null) {
+            credentialFiles.close();
+        }
+    }
+
+    /**
+     * @return ssh options which share the connection to the host of the url, null if connections are not shared
+     */
+    @CheckForNull
+    private String sshControlOptions(String userName, URIish url, String credentialsId) {
+        if (!USE_SSH_CONTROL_MASTER || url.getHost() == null) {
+            return null;
+        }
+        SshControlMaster master;
+        synchronized (this) {
+            if (sshControlMaster == null) {
+                sshControlMaster = new SshControlMaster(SSH_CONTROL_PERSIST);
+            }
+            master = sshControlMaster;
+        }
+        return master.options(userName, url.getHost(), url.getPort(), credentialsId);
+    }
+
+    /**
+     * @return file written by the writer, or reused from an earlier command if credential files are reused
+     */
+    @NonNull
+    private Path credentialFile(
+            String name, StandardCredentials credentials, List<String> content, CredentialFiles.Writer writer)
+            throws IOException {
+        if (!REUSE_CREDENTIAL_FILES) {
+            return writer.write(null);
+        }
+        CredentialFiles files;
+        synchronized (this) {
+            if (credentialFiles == null) {
+                credentialFiles = new CredentialFiles(
+                        this::createCredentialFilesDir, TimeUnit.SECONDS.toMillis(CREDENTIAL_FILES_IDLE_SECONDS));
+            }
+            files = credentialFiles;
+        }
+        return files.get(name, credentialsId(credentials), content, writer);
+    }
+
+    /* Release a file returned by credentialFile, temporary files of the command are deleted instead */
+    private void releaseCredentialFile(@CheckForNull Path file) {
+        if (file == null) {
+            return;
+        }
+        if (!REUSE_CREDENTIAL_FILES) {
+            deleteTempFile(file);
+            return;
+        }
+        CredentialFiles files;
+        synchronized (this) {
+            files = credentialFiles;
+        }
+        if (files != null) {
+            files.release(file);
+        }
+    }
+
     /**
      * Launch command using the workspace as working directory
      *
@@ -2063,6 +2501,22 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return launchCommand(new ArgumentListBuilder(args));
     }
 
+    /**
+     * Launch command using the workspace as working directory, passing each
+     * line of standard output to {@code lineConsumer} as it is produced.
+     * The complete output is never held in memory, so peak heap use is bounded
+     * by the longest line rather than by the size of the output.
+     *
+     * @param lineConsumer receives each line of standard output, without its line terminator
+     * @param args arguments to the command
+     * @throws hudson.plugins.git.GitException if launched command fails
+     * @throws java.lang.InterruptedException if interrupted
+     */
+    private void launchCommandLines(Consumer<String> lineConsumer, ArgumentListBuilder args)
+            throws GitException, InterruptedException {
+        launchCommandIn(args, workspace, environment, TIMEOUT, lineConsumer);
+    }
+
     private String launchCommandWithCredentials(
             ArgumentListBuilder args, File workDir, StandardCredentials credentials, @NonNull String url)
             throws GitException, InterruptedException {
@@ -2107,21 +2561,36 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 SSHUserPrivateKey sshUser = (SSHUserPrivateKey) credentials;
                 listener.getLogger().println("using GIT_SSH to set credentials " + sshUser.getDescription());
 
-                key = createSshKeyFile(sshUser);
+                key = credentialFile("key", sshUser, sshUser.getPrivateKeys(), dir -> createSshKeyFile(dir, sshUser));
                 // Prefer url username if set, OpenSSH 7.7 argument precedence change
                 // See JENKINS-50573 for details
                 String userName = url.getUser();
                 if (userName == null) {
                     userName = sshUser.getUsername();
                 }
-                passphrase = createPassphraseFile(sshUser);
+                passphrase = credentialFile(
+                        "passphrase",
+                        sshUser,
+                        Collections.singletonList(Secret.toString(sshUser.getPassphrase())),
+                        dir -> createPassphraseFile(dir, sshUser));
+                Path passphraseFile = passphrase;
+                List<String> askpassContent = Collections.singletonList(passphraseFile.toString());
                 knownHostsTemp = createTempFile("known_hosts", "");
                 if (launcher.isUnix()) {
-                    ssh = createUnixGitSSH(key, userName, knownHostsTemp);
-                    askpass = createUnixSshAskpass(sshUser, passphrase);
+                    ssh = createUnixGitSSH(
+                            key, userName, knownHostsTemp, sshControlOptions(userName, url, credentialsId(sshUser)));
+                    askpass = credentialFile(
+                            "askpass",
+                            sshUser,
+                            askpassContent,
+                            dir -> createUnixSshAskpass(dir, sshUser, passphraseFile));
                 } else {
                     ssh = createWindowsGitSSH(key, userName, knownHostsTemp);
-                    askpass = createWindowsSshAskpass(sshUser, passphrase);
+                    askpass = credentialFile(
+                            "askpass",
+                            sshUser,
+                            askpassContent,
+                            dir -> createWindowsSshAskpass(dir, sshUser, passphraseFile));
                 }
 
                 env = new EnvVars(env);
@@ -2139,12 +2608,31 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 StandardUsernamePasswordCredentials userPass = (StandardUsernamePasswordCredentials) credentials;
                 listener.getLogger().println("using GIT_ASKPASS to set credentials " + userPass.getDescription());
 
-                usernameFile = createUsernameFile(userPass);
-                passwordFile = createPasswordFile(userPass);
+                usernameFile = credentialFile(
+                        "username",
+                        userPass,
+                        Collections.singletonList(userPass.getUsername()),
+                        dir -> createUsernameFile(dir, userPass));
+                passwordFile = credentialFile(
+                        "password",
+                        userPass,
+                        Collections.singletonList(Secret.toString(userPass.getPassword())),
+                        dir -> createPasswordFile(dir, userPass));
+                Path userFile = usernameFile;
+                Path passFile = passwordFile;
+                List<String> askpassContent = Arrays.asList(userFile.toString(), passFile.toString());
                 if (launcher.isUnix()) {
-                    askpass = createUnixStandardAskpass(userPass, usernameFile, passwordFile);
+                    askpass = credentialFile(
+                            "askpass",
+                            userPass,
+                            askpassContent,
+                            dir -> createUnixStandardAskpass(dir, userPass, userFile, passFile));
                 } else {
-                    askpass = createWindowsStandardAskpass(userPass, usernameFile, passwordFile);
+                    askpass = credentialFile(
+                            "askpass",
+                            userPass,
+                            askpassContent,
+                            dir -> createWindowsStandardAskpass(dir, userPass, userFile, passFile));
                 }
 
                 env = new EnvVars(env);
@@ -2186,12 +2674,12 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         } catch (IOException e) {
             throw new GitException("Failed to setup credentials", e);
         } finally {
-            deleteTempFile(key);
+            releaseCredentialFile(key);
+            releaseCredentialFile(askpass);
+            releaseCredentialFile(passphrase);
+            releaseCredentialFile(usernameFile);
+            releaseCredentialFile(passwordFile);
             deleteTempFile(ssh);
-            deleteTempFile(askpass);
-            deleteTempFile(passphrase);
-            deleteTempFile(usernameFile);
-            deleteTempFile(passwordFile);
             deleteTempFile(knownHostsTemp);
         }
     }
@@ -2360,8 +2848,8 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         }
     }
 
-    private Path createSshKeyFile(SSHUserPrivateKey sshUser) throws IOException {
-        Path key = createTempFile("ssh", ".key");
+    private Path createSshKeyFile(Path dir, SSHUserPrivateKey sshUser) throws IOException {
+        Path key = createCredentialFile(dir, "ssh", ".key");
         try (BufferedWriter w = Files.newBufferedWriter(key, Charset.forName(encoding))) {
             List<String> privateKeys = sshUser.getPrivateKeys();
             for (String s : privateKeys) {
@@ -2448,8 +2936,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return "\"" + filename + "\"";
     }
 
-    private Path createWindowsSshAskpass(SSHUserPrivateKey sshUser, @NonNull Path passphrase) throws IOException {
-        Path ssh = Files.createTempFile("pass", ".bat");
+    private Path createWindowsSshAskpass(Path dir, SSHUserPrivateKey sshUser, @NonNull Path passphrase)
+            throws IOException {
+        Path ssh = dir == null ? Files.createTempFile("pass", ".bat") : createCredentialFile(dir, "pass", ".bat");
         try (BufferedWriter w = Files.newBufferedWriter(ssh, Charset.forName(encoding))) {
             // avoid echoing command as part of the password
             w.write("@echo off");
@@ -2472,8 +2961,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return "'" + filename + "'";
     }
 
-    private Path createUnixSshAskpass(SSHUserPrivateKey sshUser, @NonNull Path passphrase) throws IOException {
-        Path ssh = createTempFile("pass", ".sh");
+    private Path createUnixSshAskpass(Path dir, SSHUserPrivateKey sshUser, @NonNull Path passphrase)
+            throws IOException {
+        Path ssh = createCredentialFile(dir, "pass", ".sh");
         try (BufferedWriter w = Files.newBufferedWriter(ssh, Charset.forName(encoding))) {
             w.write("#!/bin/sh");
             w.newLine();
@@ -2486,8 +2976,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     }
 
     private Path createWindowsStandardAskpass(
-            StandardUsernamePasswordCredentials creds, Path usernameFile, Path passwordFile) throws IOException {
-        Path askpass = createTempFile("pass", ".bat");
+            Path dir, StandardUsernamePasswordCredentials creds, Path usernameFile, Path passwordFile)
+            throws IOException {
+        Path askpass = createCredentialFile(dir, "pass", ".bat");
         try (BufferedWriter w = Files.newBufferedWriter(askpass, Charset.forName(encoding))) {
             w.write("@set arg=%~1");
             w.newLine();
@@ -2503,8 +2994,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     }
 
     private Path createUnixStandardAskpass(
-            StandardUsernamePasswordCredentials creds, Path usernameFile, Path passwordFile) throws IOException {
-        Path askpass = createTempFile("pass", ".sh");
+            Path dir, StandardUsernamePasswordCredentials creds, Path usernameFile, Path passwordFile)
+            throws IOException {
+        Path askpass = createCredentialFile(dir, "pass", ".sh");
         try (BufferedWriter w = Files.newBufferedWriter(askpass, Charset.forName(encoding))) {
             w.write("#!/bin/sh");
             w.newLine();
@@ -2524,9 +3016,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return askpass;
     }
 
-    private Path createPassphraseFile(SSHUserPrivateKey sshUser) throws IOException {
+    private Path createPassphraseFile(Path dir, SSHUserPrivateKey sshUser) throws IOException {
         Charset charset = computeCredentialFileCharset("passphrase", StandardCharsets.UTF_8);
-        Path passphraseFile = createTempFile("phrase", ".txt");
+        Path passphraseFile = createCredentialFile(dir, "phrase", ".txt");
         try (BufferedWriter w = Files.newBufferedWriter(passphraseFile, charset)) {
             w.write(Secret.toString(sshUser.getPassphrase()));
             w.newLine();
@@ -2534,9 +3026,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return passphraseFile;
     }
 
-    private Path createUsernameFile(StandardUsernamePasswordCredentials userPass) throws IOException {
+    private Path createUsernameFile(Path dir, StandardUsernamePasswordCredentials userPass) throws IOException {
         Charset charset = computeCredentialFileCharset("name", StandardCharsets.UTF_8);
-        Path usernameFile = createTempFile("username", ".txt");
+        Path usernameFile = createCredentialFile(dir, "username", ".txt");
         try (BufferedWriter w = Files.newBufferedWriter(usernameFile, charset)) {
             w.write(userPass.getUsername());
             w.newLine();
@@ -2544,9 +3036,9 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return usernameFile;
     }
 
-    private Path createPasswordFile(StandardUsernamePasswordCredentials userPass) throws IOException {
+    private Path createPasswordFile(Path dir, StandardUsernamePasswordCredentials userPass) throws IOException {
         Charset charset = computeCredentialFileCharset("password", StandardCharsets.UTF_8);
-        Path passwordFile = createTempFile("password", ".txt");
+        Path passwordFile = createCredentialFile(dir, "password", ".txt");
         try (BufferedWriter w = Files.newBufferedWriter(passwordFile, charset)) {
             w.write(Secret.toString(userPass.getPassword()));
             w.newLine();
@@ -2707,7 +3199,7 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         return ssh;
     }
 
-    private Path createUnixGitSSH(Path key, String user, Path knownHosts) throws IOException {
+    private Path createUnixGitSSH(Path key, String user, Path knownHosts, String controlOptions) throws IOException {
         Path ssh = createTempFile("ssh", ".sh");
         Path ssh_copy = Paths.get(ssh.toString() + "-copy");
         boolean isCopied = false;
@@ -2724,6 +3216,7 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             w.write("fi");
             w.newLine();
             w.write("ssh -i \"" + key.toAbsolutePath() + "\" -l \"" + user + "\" "
+                    + (controlOptions == null ? "" : controlOptions + " ")
                     + getHostKeyFactory().forCliGit(listener).getVerifyHostKeyOption(knownHosts) + " \"$@\"");
             w.newLine();
         }
@@ -2776,6 +3269,79 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
     private String launchCommandIn(ArgumentListBuilder args, File workDir, EnvVars env, Integer timeout)
             throws GitException, InterruptedException {
+        return launchCommandIn(args, workDir, env, timeout, null);
+    }
+
+    /**
+     * Splits process output into lines and hands each decoded line to a
+     * consumer while the process is still running. If the consumer throws,
+     * the first failure is retained and the remaining output is drained and
+     * discarded so that the process is not blocked on a full pipe.
+     */
+    private static class LineConsumingOutputStream extends LineTransformationOutputStream {
+        private final Consumer<String> consumer;
+        private final Charset charset;
+        private volatile RuntimeException failure;
+        /* Written by the thread copying the output, read after that thread has been joined */
+        private long byteCount;
+
+        LineConsumingOutputStream(Consumer<String> consumer, Charset charset) {
+            this.consumer = consumer;
+            this.charset = charset;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) {
+            byteCount += len;
+            if (failure != null) {
+                return;
+            }
+            int end = len;
+            if (end > 0 && b[end - 1] == '\n') {
+                end--;
+            }
+            if (end > 0 && b[end - 1] == '\r') {
+                end--;
+            }
+            try {
+                consumer.accept(new String(b, 0, end, charset));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        long getByteCount() {
+            return byteCount;
+        }
+    }
+
+    /* First argument which is neither an option nor the value of a -c or -C option */
+    private static String gitSubCommand(ArgumentListBuilder args) {
+        List<String> list = args.toList();
+        for (int i = 0; i < list.size(); i++) {
+            String arg = list.get(i);
+            if (arg.equals("-c") || arg.equals("-C")) {
+                i++;
+            } else if (!arg.startsWith("-")) {
+                return arg;
+            }
+        }
+        return "git";
+    }
+
+    private String launchCommandIn(
+            ArgumentListBuilder args,
+            File workDir,
+            EnvVars env,
+            Integer timeout,
+            @CheckForNull Consumer<String> stdoutLineConsumer)
+            throws GitException, InterruptedException {
 
         EnvVars freshEnv = new EnvVars(env);
         // If we don't have credentials, but the requested URL requires them,
@@ -2790,6 +3356,8 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             args = args.prepend(extraGitCommandArguments.toArray(new String[0]));
         }
         String command = gitExe + " " + StringUtils.join(args.toCommandArray(), " ");
+        GitCommandTimer timer = GitCommandTimer.start("git", gitSubCommand(args));
+        timer.exitStatus(-1);
         try {
             args.prepend(gitExe);
             if (CALL_SETSID && launcher.isUnix() && env.containsKey("GIT_SSH") && env.containsKey("DISPLAY")) {
@@ -2799,6 +3367,7 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             }
             int usedTimeout = timeout == null ? TIMEOUT : timeout;
             listener.getLogger().println(" > " + command + TIMEOUT_LOG_PREFIX + usedTimeout);
+            timer.recordProcess(command, workDir, usedTimeout);
 
             Launcher.ProcStarter p =
                     launcher.launch().cmds(args.toCommandArray()).envs(freshEnv);
@@ -2826,6 +3395,31 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
                 stdout = readProcessIntoString(process, encoding, false);
                 stderr = readProcessIntoString(process, encoding, true);
+                timer.outputBytes(stdout.length());
+                if (stdoutLineConsumer != null && status == 0) {
+                    BufferedReader rdr = new BufferedReader(new StringReader(stdout));
+                    String line;
+                    while ((line = rdr.readLine()) != null) {
+                        stdoutLineConsumer.accept(line);
+                    }
+                    stdout = "";
+                }
+            } else if (stdoutLineConsumer != null) {
+                // Hand each line to the consumer as it arrives rather than buffering the whole output
+                LineConsumingOutputStream stdoutLines =
+                        new LineConsumingOutputStream(stdoutLineConsumer, Charset.forName(encoding));
+                ByteArrayOutputStream stderrStream = new ByteArrayOutputStream();
+
+                p.stdout(stdoutLines).stderr(stderrStream);
+                status = p.start().joinWithTimeout(usedTimeout, TimeUnit.MINUTES, listener);
+                stdoutLines.close();
+                timer.outputBytes(stdoutLines.getByteCount());
+
+                stdout = "";
+                stderr = stderrStream.toString(encoding);
+                if (status == 0) {
+                    stdoutLines.rethrowFailure();
+                }
             } else {
                 // JENKINS-13356: capture stdout and stderr separately
                 ByteArrayOutputStream stdoutStream = new ByteArrayOutputStream();
@@ -2836,7 +3430,10 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
                 stdout = stdoutStream.toString(encoding);
                 stderr = stderrStream.toString(encoding);
+                timer.outputBytes(stdoutStream.size());
             }
+            timer.errorBytes(stderr.length());
+            timer.exitStatus(status);
 
             if (status != 0) {
                 throw new GitException("Command \"" + command + "\" returned status code " + status + ":\nstdout: "
@@ -2856,6 +3453,8 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         } catch (Throwable e) {
             reportFailureClues();
             throw new GitException("Error performing git command: " + command, e);
+        } finally {
+            timer.close();
         }
     }
 
@@ -3336,19 +3935,12 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @Override
     public List<IndexEntry> lsTree(String treeIsh, boolean recursive) throws GitException, InterruptedException {
         List<IndexEntry> entries = new ArrayList<>();
-        String result = launchCommand("ls-tree", recursive ? "-r" : null, treeIsh);
-
-        BufferedReader rdr = new BufferedReader(new StringReader(result));
-        String line;
-        try {
-            while ((line = rdr.readLine()) != null) {
-                String[] entry = line.split("\\s+");
-                entries.add(new IndexEntry(entry[0], entry[1], entry[2], entry[3]));
-            }
-        } catch (IOException e) {
-            throw new GitException("Error parsing ls tree", e);
-        }
-
+        launchCommandLines(
+                line -> {
+                    String[] entry = line.split("\\s+");
+                    entries.add(new IndexEntry(entry[0], entry[1], entry[2], entry[3]));
+                },
+                new ArgumentListBuilder("ls-tree", recursive ? "-r" : null, treeIsh));
         return entries;
     }
 
@@ -3365,6 +3957,7 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             private boolean firstParent;
             private String refspec;
             private List<ObjectId> out;
+            private ObjectIdArray packedOut;
 
             @Override
             public RevListCommand all() {
@@ -3400,6 +3993,14 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             @Override
             public RevListCommand to(List<ObjectId> revs) {
                 this.out = revs;
+                this.packedOut = null;
+                return this;
+            }
+
+            @Override
+            public RevListCommand to(ObjectIdArray revs) {
+                this.packedOut = revs;
+                this.out = null;
                 return this;
             }
 
@@ -3429,20 +4030,29 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                     args.add(refspec);
                 }
 
-                String result = launchCommand(args);
-                BufferedReader rdr = new BufferedReader(new StringReader(result));
-                String line;
-
+                if (packedOut != null) {
+                    final int start = packedOut.size();
+                    try {
+                        // Pack each SHA1 as it is read, without an ObjectId per commit
+                        launchCommandLines(packedOut::add, args);
+                    } catch (GitException | InterruptedException e) {
+                        packedOut.truncate(start);
+                        throw e;
+                    }
+                    return;
+                }
                 if (out == null) {
                     throw new GitException("RevListCommand requires a value for 'to'");
                 }
+                final List<ObjectId> revs = out;
+                final int start = revs.size();
                 try {
-                    while ((line = rdr.readLine()) != null) {
-                        // Add the SHA1
-                        out.add(ObjectId.fromString(line));
-                    }
-                } catch (IOException e) {
-                    throw new GitException("Error parsing rev list", e);
+                    // Add each SHA1 as it is read, rev-list --all can report hundreds of thousands of commits
+                    launchCommandLines(line -> revs.add(ObjectId.fromString(line)), args);
+                } catch (GitException | InterruptedException e) {
+                    // Nothing is added if git fails, drop the SHA1s read before it exited
+                    revs.subList(start, revs.size()).clear();
+                    throw e;
                 }
             }
         };
@@ -3482,6 +4092,14 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         if (commit == null) {
             return false;
         }
+        if (USE_CAT_FILE_BATCH) {
+            try {
+                // A full SHA1 involves no ref lookup, so a "missing" answer from cat-file is authoritative
+                return objectInfoBatch().lookup(commit.name() + "^{commit}") != null;
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "cat-file lookup failed, falling back to rev-list", e);
+            }
+        }
         try {
             // Use revList_() directly in order to pass .nowalk(true) which
             // allows us to bypass the unnecessary revision walk when we
@@ -3549,6 +4167,11 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @Override
     public void clearCredentials() {
         this.credentials.clear();
+        synchronized (this) {
+            if (credentialFiles != null) {
+                credentialFiles.close();
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -3619,16 +4242,25 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             if (tagPattern != null) {
                 args.add(tagPattern);
             }
-            String result = launchCommandIn(args, workspace);
+            String result;
+            if (remoteUrl == null) {
+                result = launchCommandIn(args, workspace);
+            } else {
+                StandardCredentials cred = remoteCredentials(remoteUrl);
+                result = LsRemoteCache.INSTANCE.get(
+                        remoteUrl,
+                        credentialsId(cred),
+                        Arrays.asList("cli", "tags", tagPattern),
+                        () -> launchCommandWithCredentials(args, workspace, cred, remoteUrl));
+            }
             Set<String> tags = new HashSet<>();
-            BufferedReader rdr = new BufferedReader(new StringReader(result));
-            String tag;
-            while ((tag = rdr.readLine()) != null) {
+            LsRemoteParser.parse(result, (name, id, peeled) -> {
                 // Add the tag name without the SHA1
-                tags.add(tag.replaceFirst(".*refs/tags/", ""));
-            }
+                String tag = name.startsWith(Constants.R_TAGS) ? name.substring(Constants.R_TAGS.length()) : name;
+                tags.add(peeled ? tag + "^{}" : tag);
+            });
             return tags;
-        } catch (GitException | IOException | InterruptedException e) {
+        } catch (GitException | InterruptedException e) {
             throw new GitException("Error retrieving remote tag names", e);
         }
     }
@@ -3636,6 +4268,18 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public Set<String> getTagNames(String tagPattern) throws GitException {
+        Map<String, RefFiles.Entry> refs = readRefFiles(Constants.R_TAGS, tagPattern);
+        if (refs != null) {
+            Pattern pattern = tagPattern == null ? null : Pattern.compile(globToRegex(tagPattern));
+            Set<String> tags = new HashSet<>();
+            for (String refName : refs.keySet()) {
+                String tag = refName.substring(Constants.R_TAGS.length());
+                if (pattern == null || pattern.matcher(tag).matches()) {
+                    tags.add(tag);
+                }
+            }
+            return tags;
+        }
         try {
             ArgumentListBuilder args = new ArgumentListBuilder();
             args.add("tag", "-l", tagPattern);
@@ -3658,6 +4302,11 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public String getTagMessage(String tagName) throws GitException, InterruptedException {
+        CatFileBatch.ObjectInfo info = lookupObject(Constants.R_TAGS + tagName, true);
+        byte[] content = info == null ? null : info.getContent();
+        if (content != null) {
+            return objectMessage(content, info.getType()).trim();
+        }
         // 10000 lines of tag message "ought to be enough for anybody"
         String out = launchCommand("tag", "-l", tagName, "-n10000");
         // Strip the leading four spaces which git prefixes multi-line messages with
@@ -3679,6 +4328,10 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @Override
     public boolean refExists(String refName) throws GitException, InterruptedException {
         refName = refName.replace(' ', '_');
+        // show-ref also matches ref name suffixes, only a fully qualified name can be confirmed by cat-file
+        if (refName.startsWith(Constants.R_REFS) && lookupObject(refName, false) != null) {
+            return true;
+        }
         try {
             launchCommand("show-ref", refName);
             return true; // If show-ref returned zero, ref exists.
@@ -3706,16 +4359,15 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         } else {
             refPrefix = refPrefix.replace(' ', '_');
         }
+        Set<String> refsFromFiles = refNamesFromRefFiles(refPrefix);
+        if (refsFromFiles != null) {
+            return refsFromFiles;
+        }
         try {
-            String result = launchCommand("for-each-ref", "--format=%(refname)", refPrefix);
             Set<String> refs = new HashSet<>();
-            BufferedReader rdr = new BufferedReader(new StringReader(result));
-            String ref;
-            while ((ref = rdr.readLine()) != null) {
-                refs.add(ref);
-            }
+            launchCommandLines(refs::add, new ArgumentListBuilder("for-each-ref", "--format=%(refname)", refPrefix));
             return refs;
-        } catch (GitException | IOException e) {
+        } catch (GitException e) {
             throw new GitException("Error retrieving refs with prefix " + refPrefix, e);
         }
     }
@@ -3723,26 +4375,30 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public Map<String, ObjectId> getHeadRev(String url) throws GitException, InterruptedException {
-        ArgumentListBuilder args = new ArgumentListBuilder("ls-remote");
+        ArgumentListBuilder args = lsRemoteArguments();
         args.add("-h");
         addCheckedRemoteUrl(args, url);
 
-        StandardCredentials cred = credentials.get(url);
-        if (cred == null) {
-            cred = defaultCredentials;
-        }
+        StandardCredentials cred = remoteCredentials(url);
 
-        String result = launchCommandWithCredentials(args, null, cred, url);
+        String result = LsRemoteCache.INSTANCE.get(
+                url,
+                credentialsId(cred),
+                Arrays.asList("cli", "heads"),
+                () -> launchCommandWithCredentials(args, null, cred, url));
 
         Map<String, ObjectId> heads = new HashMap<>();
-        String[] lines = result.split("\n");
-        for (String line : lines) {
-            if (line.length() >= 41) {
-                heads.put(line.substring(41), ObjectId.fromString(line.substring(0, 40)));
-            } else {
+        LsRemoteParser.parse(result, new LsRemoteParser.Listener() {
+            @Override
+            public void ref(@NonNull String name, @NonNull ObjectId id, boolean peeled) {
+                heads.put(peeled ? name + "^{}" : name, id);
+            }
+
+            @Override
+            public void unexpected(@NonNull String line) {
                 listener.getLogger().println("Unexpected ls-remote output line '" + line + "'");
             }
-        }
+        });
         return heads;
     }
 
@@ -3750,15 +4406,12 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @Override
     public ObjectId getHeadRev(String url, String branchSpec) throws GitException, InterruptedException {
         final String branchName = extractBranchNameFromBranchSpec(branchSpec);
-        ArgumentListBuilder args = new ArgumentListBuilder("ls-remote");
+        ArgumentListBuilder args = lsRemoteArguments();
         if (!branchName.startsWith("refs/tags/")) {
             args.add("-h");
         }
 
-        StandardCredentials cred = credentials.get(url);
-        if (cred == null) {
-            cred = defaultCredentials;
-        }
+        StandardCredentials cred = remoteCredentials(url);
 
         addCheckedRemoteUrl(args, url);
 
@@ -3767,19 +4420,30 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
         } else {
             args.add(branchName);
         }
-        String result = launchCommandWithCredentials(args, null, cred, url);
-        return result.length() >= 40 ? ObjectId.fromString(result.substring(0, 40)) : null;
+        String result = LsRemoteCache.INSTANCE.get(
+                url,
+                credentialsId(cred),
+                Arrays.asList("cli", "branch", branchName),
+                () -> launchCommandWithCredentials(args, null, cred, url));
+        return LsRemoteParser.parseId(result, 0);
     }
 
     /** {@inheritDoc} */
     @Override
     public Map<String, ObjectId> getRemoteReferences(String url, String pattern, boolean headsOnly, boolean tagsOnly)
             throws GitException, InterruptedException {
-        ArgumentListBuilder args = new ArgumentListBuilder("ls-remote");
-        if (headsOnly) {
+        ArgumentListBuilder args = lsRemoteArguments();
+        boolean heads = headsOnly;
+        boolean tags = tagsOnly;
+        if (USE_PROTOCOL_V2 && !headsOnly && !tagsOnly && pattern != null) {
+            // A fully qualified pattern lets the server skip other namespaces, like refs/changes on Gerrit
+            heads = pattern.startsWith(Constants.R_HEADS);
+            tags = pattern.startsWith(Constants.R_TAGS);
+        }
+        if (heads) {
             args.add("-h");
         }
-        if (tagsOnly) {
+        if (tags) {
             args.add("-t");
         }
         addCheckedRemoteUrl(args, url);
@@ -3787,32 +4451,23 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             args.add(pattern);
         }
 
-        StandardCredentials cred = credentials.get(url);
-        if (cred == null) {
-            cred = defaultCredentials;
-        }
+        StandardCredentials cred = remoteCredentials(url);
 
-        String result = launchCommandWithCredentials(args, null, cred, url);
+        String result = LsRemoteCache.INSTANCE.get(
+                url,
+                credentialsId(cred),
+                Arrays.asList("cli", "references", pattern, headsOnly, tagsOnly),
+                () -> launchCommandWithCredentials(args, null, cred, url));
 
         Map<String, ObjectId> references = new HashMap<>();
-        String[] lines = result.split("\n");
-        for (String line : lines) {
-            if (line.length() < 41) {
-                continue; // throw new GitException("unexpected ls-remote output " + line);
-            }
-            String refName = line.substring(41);
-            ObjectId refObjectId = ObjectId.fromString(line.substring(0, 40));
-            if (refName.startsWith("refs/tags") && refName.endsWith("^{}")) {
-                // get peeled object id for annotated tag
-                String tagName = refName.replace("^{}", "");
-                // Replace with the peeled object id if the entry with tagName exists
-                references.put(tagName, refObjectId);
+        LsRemoteParser.parse(result, (refName, refObjectId, peeled) -> {
+            if (peeled && refName.startsWith("refs/tags")) {
+                // Replace with the peeled object id of the annotated tag if the entry with tagName exists
+                references.put(refName, refObjectId);
             } else {
-                if (!references.containsKey(refName)) {
-                    references.put(refName, refObjectId);
-                }
+                references.putIfAbsent(peeled ? refName + "^{}" : refName, refObjectId);
             }
-        }
+        });
         return references;
     }
 
@@ -3830,25 +4485,47 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 args.add(pattern);
             }
 
-            StandardCredentials cred = credentials.get(url);
-            if (cred == null) {
-                cred = defaultCredentials;
-            }
+            StandardCredentials cred = remoteCredentials(url);
 
-            String result = launchCommandWithCredentials(args, null, cred, url);
+            String result = LsRemoteCache.INSTANCE.get(
+                    url,
+                    credentialsId(cred),
+                    Arrays.asList("cli", "symref", pattern),
+                    () -> launchCommandWithCredentials(args, null, cred, url));
 
-            String[] lines = result.split("\n");
-            Pattern symRefPattern = Pattern.compile("^ref:\\s+([^ ]+)\\s+([^ ]+)$");
-            for (String line : lines) {
-                Matcher matcher = symRefPattern.matcher(line);
-                if (matcher.matches()) {
-                    references.put(matcher.group(2), matcher.group(1));
+            LsRemoteParser.parse(result, new LsRemoteParser.Listener() {
+                @Override
+                public void ref(@NonNull String name, @NonNull ObjectId id, boolean peeled) {
+                    // Only symbolic references are reported
                 }
-            }
+
+                @Override
+                public void symbolicRef(@NonNull String name, @NonNull String target) {
+                    references.put(name, target);
+                }
+            });
         }
         return references;
     }
 
+    /* ls-remote command, with the server filtering references by the -h and -t arguments if USE_PROTOCOL_V2 */
+    private ArgumentListBuilder lsRemoteArguments() {
+        ArgumentListBuilder args = new ArgumentListBuilder();
+        if (USE_PROTOCOL_V2) {
+            args.add("-c", "protocol.version=2");
+        }
+        return args.add("ls-remote");
+    }
+
+    private StandardCredentials remoteCredentials(String url) {
+        StandardCredentials cred = credentials.get(url);
+        return cred == null ? defaultCredentials : cred;
+    }
+
+    private static String credentialsId(StandardCredentials cred) {
+        return cred == null ? null : cred.getId();
+    }
+
     //
     //
     // Legacy Implementation of IGitAPI
@@ -3982,6 +4659,10 @@ public class CliGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public Set<GitObject> getTags() throws GitException, InterruptedException {
+        Set<GitObject> tagsFromFiles = tagsFromRefFiles();
+        if (tagsFromFiles != null) {
+            return tagsFromFiles;
+        }
         ArgumentListBuilder args = new ArgumentListBuilder("show-ref", "--tags", "-d");
         String result;
         try {
@@ -0,0 +1,210 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Cache of the raw diff of a commit, stored in the git directory of a repository.
+ * <p>
+ * Entries are addressed by the commit, the parent the diff is computed against and the rename detection settings,
+ * so an entry never becomes stale. The least recently used entries are removed when the cache grows beyond
+ * {@link #MAX_SIZE}. Failures to read or write the cache are logged and otherwise ignored.
+ */
+class DiffCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DiffCache.class.getName());
+
+    /**
+     * Constant which sets the size in bytes of the diff cache of a repository.
+     *
+     * <code>MAX_SIZE=Long.getLong(DiffCache.class.getName() + ".maxSize", 0)</code>.
+     *
+     * When set, changelogs of JGit remember the diff of every commit in
+     * .git/jenkins-diff-cache, so that later changelogs over the same
+     * commits do not compute the diffs again. When the cache grows beyond
+     * this size, the least recently used diffs are removed. The cache is
+     * disabled by default.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.DiffCache.maxSize=33554432'
+     * to keep up to 32 MiB of diffs per repository.
+     */
+    /* package protected for tests */
+    static long MAX_SIZE = Long.getLong(DiffCache.class.getName() + ".maxSize", 0L);
+
+    static final String DIRECTORY = "jenkins-diff-cache";
+
+    /* Repositories whose cache is kept, the least recently used cache is dropped */
+    private static final int MAX_REPOSITORIES = 100;
+
+    private static final Map<Path, DiffCache> CACHES = new LinkedHashMap<Path, DiffCache>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, DiffCache> eldest) {
+            return size() > MAX_REPOSITORIES;
+        }
+    };
+
+    private final Path dir;
+    private final long maxSize;
+    /* Size of the cache, -1 until the directory is scanned by the first put */
+    private final AtomicLong size = new AtomicLong(-1);
+
+    DiffCache(Path dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param repo repository
+     * @return cache in the git directory of the repository, shared by every formatter of the repository, null if the
+     *     cache is disabled or the repository has no git directory
+     */
+    @CheckForNull
+    static DiffCache forRepository(Repository repo) {
+        File gitDir = repo.getDirectory();
+        if (MAX_SIZE <= 0 || gitDir == null) {
+            return null;
+        }
+        synchronized (CACHES) {
+            return CACHES.computeIfAbsent(
+                    new File(gitDir.getAbsoluteFile(), DIRECTORY).toPath(), dir -> new DiffCache(dir, MAX_SIZE));
+        }
+    }
+
+    /**
+     * @param commit commit of the diff
+     * @param parent parent the diff is computed against, null for a commit without parents
+     * @param settings rename detection settings of the diff
+     * @return key of the diff
+     */
+    static String key(ObjectId commit, @CheckForNull ObjectId parent, String settings) {
+        MessageDigest digest = Constants.newMessageDigest();
+        digest.update((commit.name() + " " + (parent == null ? "root" : parent.name()) + " " + settings)
+                .getBytes(StandardCharsets.UTF_8));
+        return ObjectId.fromRaw(digest.digest()).name();
+    }
+
+    /**
+     * @param key key of the diff, see {@link #key(ObjectId, ObjectId, String)}
+     * @return the cached diff, null if it is not cached
+     */
+    @CheckForNull
+    String get(String key) {
+        Path file = file(key);
+        try {
+            String diff = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return diff;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to read " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param key key of the diff, see {@link #key(ObjectId, ObjectId, String)}
+     * @param diff diff to cache
+     */
+    void put(String key, String diff) {
+        Path file = file(key);
+        byte[] bytes = diff.getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "diff", ".tmp");
+            try {
+                Files.write(tmp, bytes);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            long total;
+            if (size.get() < 0 && size.compareAndSet(-1, scan(null))) {
+                total = size.get();
+            } else {
+                total = size.addAndGet(bytes.length);
+            }
+            if (total > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to write " + file, e);
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key.substring(2));
+    }
+
+    /**
+     * Removes the least recently used entries until the cache uses no more than three quarters of its size.
+     */
+    private synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return; // Evicted by another thread
+        }
+        Map<File, Long> lastModified = new HashMap<>();
+        long total = scan(lastModified);
+        List<Map.Entry<File, Long>> files = new ArrayList<>(lastModified.entrySet());
+        files.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<File, Long> file : files) {
+            if (total <= maxSize / 4 * 3) {
+                break;
+            }
+            long length = file.getKey().length();
+            if (file.getKey().delete()) {
+                total -= length;
+            }
+        }
+        size.set(total);
+    }
+
+    /**
+     * @param lastModified map to which the entries are added with their modification time, may be null
+     * @return total size of the entries
+     */
+    private long scan(@CheckForNull Map<File, Long> lastModified) {
+        long total = 0;
+        File[] fanouts = dir.toFile().listFiles(File::isDirectory);
+        if (fanouts == null) {
+            return 0;
+        }
+        for (File fanout : fanouts) {
+            File[] entries = fanout.listFiles((d, name) -> !name.endsWith(".tmp"));
+            if (entries == null) {
+                continue;
+            }
+            for (File entry : entries) {
+                total += entry.length();
+                if (lastModified != null) {
+                    lastModified.put(entry, entry.lastModified());
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -1005,4 +1005,26 @@ public interface GitClient {
      * @throws InterruptedException if underlying git operation fails.
      */
     boolean maintenance(String task) throws InterruptedException;
+
+    /**
+     * Returns a batch which records calls of client methods and executes them
+     * together. A client of a remote agent executes the whole batch with a
+     * single call over the agent channel, rather than with one call per
+     * method.
+     *
+     * @return a {@link org.jenkinsci.plugins.gitclient.BatchCommand} object.
+     * @since 4.7.0
+     */
+    default BatchCommand batch() {
+        return new GitClientBatch(this, null);
+    }
+
+    /**
+     * Release resources held by this client between operations, such as
+     * helper processes. The client remains usable, resources are acquired
+     * again on demand by later operations.
+     *
+     * @since 4.7.0
+     */
+    default void close() {}
 }
@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.gitclient;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.plugins.git.GitException;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.RemoteWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * {@link BatchCommand} which replays the recorded calls on a client, with a single call over the agent channel if
+ * the client is remote. Streams and writers passed to the recorded calls are written back over the channel.
+ */
+class GitClientBatch implements BatchCommand, InvocationHandler {
+    private final GitClient target;
+    private final Channel channel;
+    private final List<Call> calls = new ArrayList<>();
+    private GitClient client;
+    private List<Object> results;
+
+    /**
+     * @param target client which executes the recorded calls
+     * @param channel channel to the agent of the client, null if the calls are executed locally
+     */
+    GitClientBatch(@NonNull GitClient target, @CheckForNull Channel channel) {
+        this.target = target;
+        this.channel = channel;
+    }
+
+    @Override
+    public synchronized GitClient client() {
+        if (client == null) {
+            client = (GitClient) Proxy.newProxyInstance(
+                    GitClient.class.getClassLoader(), new Class[] {GitClient.class}, this);
+        }
+        return client;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (args == null) {
+            args = new Object[0];
+        }
+        if (Object.class == method.getDeclaringClass()) {
+            try {
+                return method.invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        Class<?> returnType = method.getReturnType();
+        if (Repository.class == returnType || BatchCommand.class == returnType) {
+            throw new UnsupportedOperationException("Cannot record " + method.getName() + " in a batch");
+        }
+        if (GitCommand.class.isAssignableFrom(returnType)) {
+            // the command is recorded in the batch when it is executed
+            return RemoteGitImpl.CommandInvocationHandler.record(
+                    returnType.asSubclass(GitCommand.class),
+                    (command, invocations) -> add(new Call(command, new ArrayList<>(invocations))));
+        }
+        if (channel != null) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] instanceof StandardCredentials) {
+                    // credentials are Serializable
+                    args[i] = CredentialsProvider.snapshot(StandardCredentials.class, (StandardCredentials) args[i]);
+                } else if (args[i] instanceof OutputStream) {
+                    // the agent writes back to the stream of the caller
+                    args[i] = new RemoteOutputStream((OutputStream) args[i]);
+                } else if (args[i] instanceof Writer) {
+                    args[i] = new RemoteWriter((Writer) args[i]);
+                }
+            }
+        }
+        add(new Call(new RemoteGitImpl.Invocation(method, args)));
+        return defaultValue(returnType);
+    }
+
+    private synchronized void add(Call call) {
+        if (results != null) {
+            throw new IllegalStateException("Batch has already been executed");
+        }
+        calls.add(call);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    @Override
+    public void execute() throws GitException, InterruptedException {
+        List<Call> recorded;
+        synchronized (this) {
+            if (results != null) {
+                throw new IllegalStateException("Batch has already been executed");
+            }
+            recorded = new ArrayList<>(calls);
+        }
+        List<Object> values;
+        if (channel == null) {
+            values = replay(target, recorded);
+        } else {
+            try {
+                values = channel.call(new BatchMasterToSlaveCallable(target, recorded));
+            } catch (IOException e) {
+                throw new GitException(e);
+            }
+            // output written to remote streams by the recorded calls arrives asynchronously
+            channel.syncLocalIO();
+        }
+        synchronized (this) {
+            results = Collections.unmodifiableList(values);
+        }
+    }
+
+    @Override
+    public synchronized List<Object> results() {
+        if (results == null) {
+            throw new IllegalStateException("Batch has not been executed");
+        }
+        return results;
+    }
+
+    private static List<Object> replay(GitClient git, List<Call> calls) throws GitException, InterruptedException {
+        List<Object> values = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            try {
+                values.add(call.replay(git));
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GitException) {
+                    throw (GitException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new GitException(cause);
+            } catch (IllegalAccessException e) {
+                throw new GitException(e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Recorded call of a client method, or execution of a command created by a client method.
+     */
+    private static final class Call implements Serializable {
+        private final RemoteGitImpl.Invocation invocation;
+        private final Class<? extends GitCommand> command;
+        private final List<RemoteGitImpl.Invocation> commandInvocations;
+
+        Call(RemoteGitImpl.Invocation invocation) {
+            this.invocation = invocation;
+            this.command = null;
+            this.commandInvocations = null;
+        }
+
+        Call(Class<? extends GitCommand> command, List<RemoteGitImpl.Invocation> commandInvocations) {
+            this.invocation = null;
+            this.command = command;
+            this.commandInvocations = commandInvocations;
+        }
+
+        /**
+         * @return return value of the client method, null for a command
+         */
+        Object replay(GitClient git)
+                throws GitException, InterruptedException, InvocationTargetException, IllegalAccessException {
+            if (invocation != null) {
+                return invocation.replay(git);
+            }
+            RemoteGitImpl.CommandInvocationHandler.replay(git, command, commandInvocations);
+            return null;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class BatchMasterToSlaveCallable
+            extends jenkins.security.MasterToSlaveCallable<List<Object>, GitException> {
+        private final GitClient target;
+        private final List<Call> calls;
+
+        BatchMasterToSlaveCallable(GitClient target, List<Call> calls) {
+            this.target = target;
+            this.calls = calls;
+        }
+
+        @Override
+        public List<Object> call() throws GitException {
+            try {
+                return replay(target, calls);
+            } catch (InterruptedException e) {
+                throw new GitException(e);
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Completed git operation reported to {@link GitCommandListener} extensions.
+ *
+ * @since 4.7.0
+ */
+public final class GitCommandEvent {
+    private final String implementation;
+    private final String operation;
+    private final long durationNanos;
+    private final long outputBytes;
+    private final int exitStatus;
+
+    GitCommandEvent(String implementation, String operation, long durationNanos, long outputBytes, int exitStatus) {
+        this.implementation = implementation;
+        this.operation = operation;
+        this.durationNanos = durationNanos;
+        this.outputBytes = outputBytes;
+        this.exitStatus = exitStatus;
+    }
+
+    /**
+     * @return "git" for command line git, "jgit" for JGit
+     */
+    @NonNull
+    public String getImplementation() {
+        return implementation;
+    }
+
+    /**
+     * @return the git sub-command for command line git, like "fetch" or "rev-list", the name of the operation for JGit
+     */
+    @NonNull
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return wall clock time of the operation in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return bytes written by the operation to its standard output, or -1 if not known
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    /**
+     * @return exit status of the git process, 0 for success. JGit operations report 1 for failure. Operations which
+     * were interrupted or timed out before an exit status was known report -1.
+     */
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    @Override
+    public String toString() {
+        return implementation + " " + operation + " status " + exitStatus + " in " + durationNanos / 1000000 + " ms";
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Receives the duration, output size and exit status of git operations, for example to publish them as metrics.
+ * <p>
+ * Operations of command line git are reported for every git process. Operations of JGit are reported for fetch,
+ * clone, checkout, ls-remote, rev-list, changelog and push. Listeners registered as extensions receive the operations
+ * which run in the JVM of the Jenkins controller. Extensions are not available in the JVM of an agent, operations
+ * which run there are reported to the {@link GitCommandStatistics} of that JVM, which the controller reads with
+ * {@link GitCommandStatistics#getOperations(hudson.remoting.VirtualChannel)}. When no listener is enabled,
+ * operations are not measured.
+ *
+ * @since 4.7.0
+ */
+public abstract class GitCommandListener implements ExtensionPoint {
+
+    private static final Logger LOGGER = Logger.getLogger(GitCommandListener.class.getName());
+
+    /**
+     * Called after a git operation has completed, successfully or not. Called from the thread which ran the
+     * operation, implementations should return quickly.
+     *
+     * @param event description of the operation
+     */
+    public abstract void onCompleted(@NonNull GitCommandEvent event);
+
+    /**
+     * @return true if this listener wants to be called, operations are not measured when no listener is enabled
+     */
+    protected boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * @return all registered listeners, only the statistics of this JVM if it is not the Jenkins controller
+     */
+    @NonNull
+    public static List<GitCommandListener> all() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return Collections.singletonList(GitCommandStatistics.local());
+        }
+        return ExtensionList.lookup(GitCommandListener.class);
+    }
+
+    /**
+     * @return registered listeners which are enabled
+     */
+    static List<GitCommandListener> enabled() {
+        List<GitCommandListener> enabled = new ArrayList<>();
+        for (GitCommandListener listener : all()) {
+            if (listener.isEnabled()) {
+                enabled.add(listener);
+            }
+        }
+        return enabled;
+    }
+
+    static void fireCompleted(GitCommandEvent event) {
+        for (GitCommandListener listener : enabled()) {
+            try {
+                listener.onCompleted(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to report " + event + " to " + listener, e);
+            }
+        }
+    }
+}
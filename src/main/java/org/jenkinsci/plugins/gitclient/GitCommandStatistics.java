@@ -0,0 +1,215 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Counters and duration histograms of git operations per implementation and operation, for metrics collectors to
+ * read with {@link #get()} and {@link #getOperations()}. Operations which ran on an agent are counted in the JVM of
+ * the agent and read with {@link #getOperations(VirtualChannel)}. Operations are only counted when {@link #ENABLED}
+ * is set in the JVM which runs them.
+ *
+ * @since 4.7.0
+ */
+@Extension
+public class GitCommandStatistics extends GitCommandListener {
+
+    /**
+     * Upper bounds in milliseconds of the buckets of the duration histograms. Durations longer than the last bound are
+     * counted in an additional bucket.
+     */
+    private static final long[] DURATION_BUCKETS_MILLIS = {10, 50, 100, 500, 1000, 5000, 10000, 60000, 600000};
+
+    /**
+     * Constant which enables the statistics of git operations.
+     *
+     * <code>ENABLED=Boolean.valueOf(System.getProperty(GitCommandStatistics.class.getName() + ".enabled", "false"))</code>.
+     *
+     * Git operations are only measured when a listener is enabled. The
+     * statistics are a listener which is disabled unless a metrics
+     * collector reads them.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.GitCommandStatistics.enabled=true'
+     * to count git operations and their durations. Set it for the agent
+     * JVM too, to count the git operations which run on that agent.
+     */
+    static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty(GitCommandStatistics.class.getName() + ".enabled", "false"));
+
+    /* Statistics of a JVM without Jenkins extensions, an agent */
+    private static final GitCommandStatistics LOCAL = new GitCommandStatistics();
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * @return the statistics registered with Jenkins
+     */
+    @NonNull
+    public static GitCommandStatistics get() {
+        return ExtensionList.lookupSingleton(GitCommandStatistics.class);
+    }
+
+    /**
+     * @return statistics of this JVM if it is not the Jenkins controller
+     */
+    static GitCommandStatistics local() {
+        return LOCAL;
+    }
+
+    /**
+     * Read the statistics of the git operations which ran in the JVM of an agent.
+     *
+     * @param channel channel of the agent
+     * @return statistics of every operation reported so far on that agent
+     * @throws IOException if the agent could not be reached
+     * @throws InterruptedException if interrupted
+     */
+    @NonNull
+    public static List<Operation> getOperations(@NonNull VirtualChannel channel)
+            throws IOException, InterruptedException {
+        return channel.call(new LocalOperations());
+    }
+
+    private static final class LocalOperations extends MasterToSlaveCallable<List<Operation>, RuntimeException> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public List<Operation> call() {
+            return LOCAL.getOperations();
+        }
+    }
+
+    /**
+     * @return upper bounds in milliseconds of the buckets of {@link Operation#getDurationHistogram()}
+     */
+    @NonNull
+    public static long[] getDurationBucketsMillis() {
+        return DURATION_BUCKETS_MILLIS.clone();
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public void onCompleted(@NonNull GitCommandEvent event) {
+        operations
+                .computeIfAbsent(
+                        event.getImplementation() + " " + event.getOperation(),
+                        k -> new Operation(event.getImplementation(), event.getOperation()))
+                .record(event);
+    }
+
+    /**
+     * @return statistics of every operation reported so far
+     */
+    @NonNull
+    public List<Operation> getOperations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    /**
+     * @return number of changelog commits whose renames were not fully detected because the commit had too many
+     *     added or deleted files or rename detection took too long, reported by JGit only
+     */
+    public long getRenameLimitedCommits() {
+        return RenameBudget.getLimitedCommits();
+    }
+
+    /**
+     * Statistics of one operation of one implementation.
+     */
+    public static final class Operation implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String implementation;
+        private final String operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder outputBytes = new LongAdder();
+        private final LongAdder durationNanos = new LongAdder();
+        private final AtomicLongArray durationHistogram = new AtomicLongArray(DURATION_BUCKETS_MILLIS.length + 1);
+
+        Operation(String implementation, String operation) {
+            this.implementation = implementation;
+            this.operation = operation;
+        }
+
+        void record(GitCommandEvent event) {
+            count.increment();
+            if (event.getExitStatus() != 0) {
+                failures.increment();
+            }
+            if (event.getOutputBytes() > 0) {
+                outputBytes.add(event.getOutputBytes());
+            }
+            durationNanos.add(event.getDurationNanos());
+            long millis = TimeUnit.NANOSECONDS.toMillis(event.getDurationNanos());
+            int bucket = 0;
+            while (bucket < DURATION_BUCKETS_MILLIS.length && millis > DURATION_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            durationHistogram.incrementAndGet(bucket);
+        }
+
+        /**
+         * @return "git" or "jgit"
+         */
+        @NonNull
+        public String getImplementation() {
+            return implementation;
+        }
+
+        /**
+         * @return name of the operation, see {@link GitCommandEvent#getOperation()}
+         */
+        @NonNull
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return number of operations with a non-zero exit status
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getOutputBytes() {
+            return outputBytes.sum();
+        }
+
+        public long getTotalDurationNanos() {
+            return durationNanos.sum();
+        }
+
+        /**
+         * @return number of operations per duration bucket, see {@link #getDurationBucketsMillis()}
+         */
+        @NonNull
+        public long[] getDurationHistogram() {
+            long[] histogram = new long[durationHistogram.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = durationHistogram.get(i);
+            }
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.jenkinsci.plugins.gitclient;
+
+import java.io.File;
+
+/**
+ * Measures a git operation and reports it to the {@link GitCommandListener} extensions when closed. Nothing is
+ * measured if no listener is enabled. Command line git processes are also recorded as {@link GitProcessEvent} if
+ * Java Flight Recorder records those events.
+ */
+class GitCommandTimer implements AutoCloseable {
+
+    private final String implementation;
+    private final String operation;
+    private final boolean enabled;
+    private final long start;
+    private long outputBytes = -1;
+    private long errorBytes = -1;
+    private GitProcessEvent processEvent;
+    private Integer exitStatus;
+    private boolean succeeded;
+
+    private GitCommandTimer(String implementation, String operation, boolean enabled) {
+        this.implementation = implementation;
+        this.operation = operation;
+        this.enabled = enabled;
+        this.start = enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Start measuring an operation.
+     *
+     * @param implementation "git" or "jgit"
+     * @param operation name of the operation
+     * @return timer which reports the operation when closed
+     */
+    static GitCommandTimer start(String implementation, String operation) {
+        return new GitCommandTimer(implementation, operation, !GitCommandListener.enabled().isEmpty());
+    }
+
+    /**
+     * Mark the operation as successful, operations which are not marked report exit status 1.
+     */
+    void succeeded() {
+        succeeded = true;
+    }
+
+    void exitStatus(int status) {
+        exitStatus = status;
+    }
+
+    void outputBytes(long bytes) {
+        outputBytes = bytes;
+    }
+
+    void errorBytes(long bytes) {
+        errorBytes = bytes;
+    }
+
+    /**
+     * Record the git process of this operation in a {@link GitProcessEvent}, if Java Flight Recorder is recording
+     * those events.
+     *
+     * @param command command line of the process
+     * @param workDir working directory of the process, may be null
+     * @param timeoutMinutes timeout of the process
+     */
+    void recordProcess(String command, File workDir, int timeoutMinutes) {
+        GitProcessEvent event = new GitProcessEvent();
+        if (event.isEnabled()) {
+            event.command = command;
+            event.workDir = workDir == null ? null : workDir.getPath();
+            event.timeoutMinutes = timeoutMinutes;
+            event.begin();
+            processEvent = event;
+        }
+    }
+
+    @Override
+    public void close() {
+        int status = exitStatus != null ? exitStatus : succeeded ? 0 : 1;
+        if (processEvent != null) {
+            processEvent.exitStatus = status;
+            processEvent.stdoutBytes = outputBytes;
+            processEvent.stderrBytes = errorBytes;
+            processEvent.commit();
+        }
+        if (!enabled) {
+            return;
+        }
+        GitCommandListener.fireCompleted(new GitCommandEvent(
+                implementation, operation, System.nanoTime() - start, outputBytes, status));
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a command line git process, see {@link CliGitAPIImpl}.
+ */
+@Name("org.jenkinsci.plugins.gitclient.GitProcess")
+@Label("Git Process")
+@Category({"Jenkins", "Git"})
+@Description("Command line git process started by the git client plugin")
+@StackTrace(false)
+@SuppressFBWarnings(value = "URF_UNREAD_FIELD", justification = "Fields are read by Java Flight Recorder")
+final class GitProcessEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Working Directory")
+    String workDir;
+
+    @Label("Timeout Minutes")
+    int timeoutMinutes;
+
+    @Label("Exit Status")
+    @Description("Exit status of the process, -1 if it was interrupted or timed out")
+    int exitStatus;
+
+    @Label("Standard Output")
+    @DataAmount
+    long stdoutBytes;
+
+    @Label("Standard Error")
+    @DataAmount
+    long stderrBytes;
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.net.URISyntaxException;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.eclipse.jgit.transport.URIish;
+
+/**
+ * Java Flight Recorder event for a fetch, push or ls-remote of {@link JGitAPIImpl}.
+ */
+@Name("org.jenkinsci.plugins.gitclient.GitTransport")
+@Label("Git Transport")
+@Category({"Jenkins", "Git"})
+@Description("Fetch, push or ls-remote by JGit in the git client plugin")
+@StackTrace(false)
+@SuppressFBWarnings(value = "URF_UNREAD_FIELD", justification = "Fields are read by Java Flight Recorder")
+final class GitTransportEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Remote")
+    String remote;
+
+    @Label("Advertised Refs")
+    @Description("Number of references advertised by the remote repository")
+    int advertisedRefs;
+
+    @Label("Updated Refs")
+    @Description("Number of references updated by a fetch or push")
+    int updatedRefs;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * Start an event, which is committed by {@link #commit()} in a finally block.
+     *
+     * @param operation "fetch", "push" or "ls-remote"
+     * @param remote remote repository, user information is removed
+     * @return started event
+     */
+    static GitTransportEvent start(String operation, String remote) {
+        GitTransportEvent event = new GitTransportEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.remote = withoutUserInfo(remote);
+            event.begin();
+        }
+        return event;
+    }
+
+    void succeeded(int advertisedRefs, int updatedRefs) {
+        this.advertisedRefs = advertisedRefs;
+        this.updatedRefs = updatedRefs;
+        this.succeeded = true;
+    }
+
+    private static String withoutUserInfo(String remote) {
+        if (remote == null) {
+            return null;
+        }
+        try {
+            return new URIish(remote).setUser(null).setPass(null).toString();
+        } catch (URISyntaxException e) {
+            return remote;
+        }
+    }
+}
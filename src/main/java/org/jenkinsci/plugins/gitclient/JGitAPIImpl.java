@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.gitclient;
 
+import static org.apache.commons.lang.StringUtils.indexOfAny;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.removeStart;
 import static org.eclipse.jgit.api.ResetCommand.ResetType.HARD;
@@ -15,6 +16,7 @@ import static org.jenkinsci.plugins.gitclient.CliGitAPIImpl.TIMEOUT;
 import static org.jenkinsci.plugins.gitclient.CliGitAPIImpl.TIMEOUT_LOG_PREFIX;
 
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.FilePath;
@@ -26,6 +28,8 @@ import hudson.plugins.git.GitLockFailedException;
 import hudson.plugins.git.GitObject;
 import hudson.plugins.git.IndexEntry;
 import hudson.plugins.git.Revision;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -35,17 +39,32 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -70,6 +89,7 @@ import org.eclipse.jgit.api.errors.CanceledException;
 import org.eclipse.jgit.api.errors.CheckoutConflictException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.diff.DiffConfig;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.RenameDetector;
@@ -106,6 +126,7 @@ import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.submodule.SubmoduleWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.FetchConnection;
+import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.HttpTransport;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RefSpec;
@@ -135,11 +156,95 @@ import org.jenkinsci.plugins.gitclient.verifier.HostKeyVerifierFactory;
 public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Constant which controls reuse of one repository handle for all operations of a client.
+     *
+     * <code>CACHE_REPOSITORY=Boolean.valueOf(System.getProperty(JGitAPIImpl.class.getName() + ".cacheRepository", "true"))</code>.
+     *
+     * Building a repository reads its configuration, scans its packs and
+     * reads packed-refs. A client keeps the repository it built open and
+     * reference counted, so that a sequence of operations reuses the pack
+     * index and ref caches. The repository is released when it has not been
+     * used for {@link #CACHE_REPOSITORY_IDLE_TIMEOUT} milliseconds, by
+     * {@link #close()} and before init or clone replace it, so that its pack
+     * files do not stay open for the lifetime of the client.
+     *
+     * Disabled by default on Windows, where the open pack files of a cached
+     * repository would prevent deletion of the workspace.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.JGitAPIImpl.cacheRepository=false'
+     * to build a new repository for every operation as in earlier releases.
+     */
+    private static final boolean CACHE_REPOSITORY = Boolean.parseBoolean(System.getProperty(
+            JGitAPIImpl.class.getName() + ".cacheRepository", String.valueOf(File.pathSeparatorChar != ';')));
+
+    /**
+     * Constant which sets how long a cached repository stays open without being used.
+     *
+     * <code>CACHE_REPOSITORY_IDLE_TIMEOUT=Long.getLong(JGitAPIImpl.class.getName() + ".cacheRepositoryIdleTimeout", 10000L)</code>.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.JGitAPIImpl.cacheRepositoryIdleTimeout=60000'
+     * to keep an unused repository open for a minute.
+     */
+    /* package protected for tests */
+    static long CACHE_REPOSITORY_IDLE_TIMEOUT =
+            Long.getLong(JGitAPIImpl.class.getName() + ".cacheRepositoryIdleTimeout", 10000L);
+
+    private static final ScheduledExecutorService REPOSITORY_REAPER = createRepositoryReaper();
+
+    private static ScheduledExecutorService createRepositoryReaper() {
+        ScheduledThreadPoolExecutor reaper = new ScheduledThreadPoolExecutor(
+                1, new NamingThreadFactory(new DaemonThreadFactory(), JGitAPIImpl.class.getSimpleName()));
+        reaper.setRemoveOnCancelPolicy(true);
+        return reaper;
+    }
+
     private final TaskListener listener;
     private PersonIdent author, committer;
 
+    /**
+     * Constant which sets the number of threads which compute the diffs of a changelog.
+     *
+     * <code>CHANGELOG_THREADS=Integer.getInteger(JGitAPIImpl.class.getName() + ".changelogThreads", 4)</code>.
+     *
+     * The changelog is still written in the order of the history. While a
+     * commit is written, the diffs of the commits which follow it are
+     * computed concurrently, each thread with its own object reader. The
+     * number of threads is limited by the number of processors.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.JGitAPIImpl.changelogThreads=1'
+     * to compute the diffs of a changelog in the calling thread.
+     */
+    private static final int CHANGELOG_THREADS = Math.min(
+            Integer.getInteger(JGitAPIImpl.class.getName() + ".changelogThreads", 4),
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Constant which asks remote repositories to filter the references they advertise.
+     *
+     * <code>USE_PROTOCOL_V2=Boolean.valueOf(System.getProperty(JGitAPIImpl.class.getName() + ".useProtocolV2", "false"))</code>.
+     *
+     * getRemoteReferences and getHeadRev use git protocol v2 and send the
+     * servers 'ref-prefix' filters derived from the pattern, the branch name
+     * and the heads only or tags only arguments. Servers with many references
+     * outside the requested namespace send much less data. Servers which do
+     * not support protocol v2 advertise all references as before.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.JGitAPIImpl.useProtocolV2=true'
+     * to let the server filter the references it advertises.
+     */
+    private static final boolean USE_PROTOCOL_V2 =
+            Boolean.parseBoolean(System.getProperty(JGitAPIImpl.class.getName() + ".useProtocolV2", "false"));
+
     private transient CredentialsProvider provider;
 
+    /* Repository reused by getRepository(), holds one reference of its own until released */
+    private transient Repository cachedRepository;
+    /* Identity of the git directory of cachedRepository, detects a repository deleted and created again */
+    private transient Object cachedRepositoryKey;
+    private transient long cachedRepositoryLastUsed;
+    private transient ScheduledFuture<?> cachedRepositoryIdleCheck;
+
     JGitAPIImpl(File workspace, TaskListener listener) {
         /* If workspace is null, then default to current directory to match
          * CliGitAPIImpl behavior */
@@ -245,6 +350,7 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     }
 
     private void doInit(String workspace, boolean bare) throws GitException {
+        close();
         try {
             Git.init().setBare(bare).setDirectory(new File(workspace)).call();
         } catch (GitAPIException e) {
@@ -318,12 +424,15 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                     throw new UnsupportedOperationException("not implemented yet");
                 }
 
-                if (branch == null) {
-                    doCheckoutWithResetAndRetry(ref);
-                } else if (deleteBranch) {
-                    doCheckoutWithResetAndRetryAndCleanBranch(branch, ref);
-                } else {
-                    doCheckout(ref, branch);
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "checkout")) {
+                    if (branch == null) {
+                        doCheckoutWithResetAndRetry(ref);
+                    } else if (deleteBranch) {
+                        doCheckoutWithResetAndRetryAndCleanBranch(branch, ref);
+                    } else {
+                        doCheckout(ref, branch);
+                    }
+                    timer.succeeded();
                 }
             }
         };
@@ -397,6 +506,7 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 return;
             } catch (CheckoutConflictException e) {
                 closeRepo(repo); /* Ready to reuse repo */
+                repo = null; /* Not closed again by finally if no retry */
                 // "git checkout -f" seems to overwrite local untracked files but git CheckoutCommand doesn't.
                 // see the test case GitAPITest.testLocalCheckoutConflict. so in this case we manually
                 // clean up the conflicts and try it again
@@ -574,6 +684,10 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     static final int MAX_TIMEOUT = 1 << 15; // Avoid JGit integer overflow
 
     private void setTransportTimeout(TransportCommand transport, String operationName, Integer timeoutInMinutes) {
+        transport.setTimeout(transportTimeoutSeconds(operationName, timeoutInMinutes));
+    }
+
+    private int transportTimeoutSeconds(String operationName, Integer timeoutInMinutes) {
         if (timeoutInMinutes == null) {
             /* Use the default timeout */
             timeoutInMinutes = TIMEOUT;
@@ -601,8 +715,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                             + operationName);
         }
 
-        transport.setTimeout(timeoutInSeconds);
         listener.getLogger().println(" > JGit " + operationName + TIMEOUT_LOG_PREFIX + timeoutInMinutes);
+        return timeoutInSeconds;
     }
 
     /**
@@ -665,6 +779,13 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             @Override
             public void execute() throws GitException {
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "fetch")) {
+                    doExecute();
+                    timer.succeeded();
+                }
+            }
+
+            private void doExecute() throws GitException {
                 try (Repository repo = getRepository()) {
                     Git git = git(repo);
 
@@ -702,7 +823,7 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                         }
                         fetch.setDepth(depth);
                     }
-                    fetch.call();
+                    callFetch(fetch, url.toString());
                 } catch (GitAPIException e) {
                     throw new GitException(e);
                 }
@@ -743,12 +864,26 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             }
             fetch.setRefSpecs(refSpecs);
             setTransportTimeout(fetch, "fetch", TIMEOUT);
-            fetch.call();
+            callFetch(fetch, remoteName);
         } catch (GitAPIException e) {
             throw new GitException(e);
         }
     }
 
+    /**
+     * Calls a fetch command and records it as a {@link GitTransportEvent}.
+     */
+    private static FetchResult callFetch(FetchCommand fetch, String remote) throws GitAPIException {
+        GitTransportEvent event = GitTransportEvent.start("fetch", remote);
+        try {
+            FetchResult result = fetch.call();
+            event.succeeded(result.getAdvertisedRefs().size(), result.getTrackingRefUpdates().size());
+            return result;
+        } finally {
+            event.commit();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void fetch(String remoteName, RefSpec refspec) throws GitException {
@@ -841,25 +976,45 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @Override
     public Map<String, ObjectId> getRemoteReferences(String url, String pattern, boolean headsOnly, boolean tagsOnly)
             throws GitException, InterruptedException {
+        return new HashMap<>(cachedLsRemote(
+                url,
+                Arrays.asList("jgit", "references", pattern, headsOnly, tagsOnly),
+                () -> lsRemoteReferences(url, pattern, headsOnly, tagsOnly)));
+    }
+
+    private Map<String, ObjectId> lsRemoteReferences(String url, String pattern, boolean headsOnly, boolean tagsOnly)
+            throws GitException {
         Map<String, ObjectId> references = new HashMap<>();
         String regexPattern = null;
         if (pattern != null) {
             regexPattern = createRefRegexFromGlob(pattern);
         }
+        GitTransportEvent event = GitTransportEvent.start("ls-remote", url);
         try (Repository repo = openDummyRepository()) {
-            LsRemoteCommand lsRemote = new LsRemoteCommand(repo);
-            if (headsOnly) {
-                lsRemote.setHeads(headsOnly);
-            }
-            if (tagsOnly) {
-                lsRemote.setTags(tagsOnly);
+            Collection<Ref> refs;
+            if (USE_PROTOCOL_V2) {
+                refs = lsRemoteWithPrefixes(repo, url, lsRemotePrefixes(pattern, headsOnly, tagsOnly));
+            } else {
+                LsRemoteCommand lsRemote = new LsRemoteCommand(repo);
+                if (headsOnly) {
+                    lsRemote.setHeads(headsOnly);
+                }
+                if (tagsOnly) {
+                    lsRemote.setTags(tagsOnly);
+                }
+                lsRemote.setRemote(url);
+                lsRemote.setCredentialsProvider(getProvider());
+                setTransportTimeout(lsRemote, "ls-remote", TIMEOUT);
+                refs = lsRemote.call();
             }
-            lsRemote.setRemote(url);
-            lsRemote.setCredentialsProvider(getProvider());
-            setTransportTimeout(lsRemote, "ls-remote", TIMEOUT);
-            Collection<Ref> refs = lsRemote.call();
+            event.succeeded(refs.size(), 0);
             for (final Ref r : refs) {
                 final String refName = r.getName();
+                if ((headsOnly || tagsOnly)
+                        && !(headsOnly && refName.startsWith(R_HEADS))
+                        && !(tagsOnly && refName.startsWith(R_TAGS))) {
+                    continue; // Server did not support protocol v2 and advertised all references
+                }
                 final ObjectId refObjectId = r.getPeeledObjectId() != null ? r.getPeeledObjectId() : r.getObjectId();
                 if (regexPattern != null) {
                     if (refName.matches(regexPattern)) {
@@ -869,29 +1024,80 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                     references.put(refName, refObjectId);
                 }
             }
-        } catch (JGitInternalException | GitAPIException | IOException e) {
+        } catch (JGitInternalException | GitAPIException | IOException | URISyntaxException e) {
             throw new GitException(e);
+        } finally {
+            event.commit();
         }
         return references;
     }
 
+    /**
+     * Lists the references of a remote repository with protocol v2, asking the server to only advertise the
+     * references which start with one of the given prefixes. All references are listed if there are no prefixes.
+     * Servers which do not support protocol v2 advertise all their references.
+     */
+    private Collection<Ref> lsRemoteWithPrefixes(Repository repo, String url, List<String> prefixes)
+            throws IOException, URISyntaxException {
+        repo.getConfig().setInt("protocol", null, "version", 2);
+        try (Transport tn = Transport.open(repo, new URIish(url))) {
+            tn.setCredentialsProvider(getProvider());
+            tn.setTimeout(transportTimeoutSeconds("ls-remote", TIMEOUT));
+            try (FetchConnection c = tn.openFetch(Collections.emptyList(), prefixes.toArray(new String[0]))) {
+                return c.getRefs();
+            }
+        }
+    }
+
+    /**
+     * Reference name prefixes which cover every reference an ls-remote query can return. The pattern only narrows
+     * the prefixes if it is a fully qualified reference name, other patterns match the tail of a reference name.
+     */
+    static List<String> lsRemotePrefixes(String pattern, boolean headsOnly, boolean tagsOnly) {
+        List<String> prefixes = new ArrayList<>();
+        if (headsOnly) {
+            prefixes.add(R_HEADS);
+        }
+        if (tagsOnly) {
+            prefixes.add(R_TAGS);
+        }
+        if (pattern == null || !pattern.startsWith(Constants.R_REFS)) {
+            return prefixes;
+        }
+        int wildcard = indexOfAny(pattern, "*?");
+        String patternPrefix = wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+        if (prefixes.isEmpty()) {
+            return Collections.singletonList(patternPrefix);
+        }
+        for (String prefix : prefixes) {
+            if (patternPrefix.startsWith(prefix)) {
+                return Collections.singletonList(patternPrefix);
+            }
+        }
+        return prefixes;
+    }
+
     @Override
     public Map<String, String> getRemoteSymbolicReferences(String url, String pattern)
             throws GitException, InterruptedException {
-        Map<String, String> references = new HashMap<>();
-        String regexPattern = null;
-        if (pattern != null) {
-            regexPattern = replaceGlobCharsWithRegExChars(pattern);
-        }
+        String regexPattern = pattern == null ? null : replaceGlobCharsWithRegExChars(pattern);
         if (regexPattern != null && !Constants.HEAD.matches(regexPattern)) {
-            return references;
+            return new HashMap<>();
         }
+        return new HashMap<>(cachedLsRemote(
+                url, Arrays.asList("jgit", "symref", pattern), () -> lsRemoteSymbolicReferences(url, regexPattern)));
+    }
+
+    private Map<String, String> lsRemoteSymbolicReferences(String url, String regexPattern) throws GitException {
+        Map<String, String> references = new HashMap<>();
+        GitTransportEvent event = GitTransportEvent.start("ls-remote", url);
         try (Repository repo = openDummyRepository()) {
             LsRemoteCommand lsRemote = new LsRemoteCommand(repo);
             lsRemote.setRemote(url);
             lsRemote.setCredentialsProvider(getProvider());
             setTransportTimeout(lsRemote, "ls-remote", TIMEOUT);
             Collection<Ref> refs = lsRemote.call();
+            event.succeeded(refs.size(), 0);
             for (final Ref r : refs) {
                 if (!r.isSymbolic()) { // Skip reference if it is not symbolic
                     continue;
@@ -904,6 +1110,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             }
         } catch (GitAPIException | IOException e) {
             throw new GitException(e);
+        } finally {
+            event.commit();
         }
         return references;
     }
@@ -948,13 +1156,41 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     /** {@inheritDoc} */
     @Override
     public ObjectId getHeadRev(String remoteRepoUrl, String branchSpec) throws GitException {
-        try (Repository repo = openDummyRepository();
-                final Transport tn = Transport.open(repo, new URIish(remoteRepoUrl))) {
+        try {
+            return cachedLsRemote(
+                    remoteRepoUrl,
+                    Arrays.asList("jgit", "branch", branchSpec),
+                    () -> lsRemoteHeadRev(remoteRepoUrl, branchSpec));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitException(e);
+        }
+    }
+
+    private ObjectId lsRemoteHeadRev(String remoteRepoUrl, String branchSpec) throws GitException {
+        try (Repository repo = openDummyRepository()) {
+            if (USE_PROTOCOL_V2) {
+                repo.getConfig().setInt("protocol", null, "version", 2);
+            }
+            return lsRemoteHeadRev(repo, remoteRepoUrl, branchSpec);
+        } catch (IOException e) {
+            throw new GitException(e);
+        }
+    }
+
+    private ObjectId lsRemoteHeadRev(Repository repo, String remoteRepoUrl, String branchSpec) throws GitException {
+        GitTransportEvent event = GitTransportEvent.start("ls-remote", remoteRepoUrl);
+        try (final Transport tn = Transport.open(repo, new URIish(remoteRepoUrl))) {
             final String branchName = extractBranchNameFromBranchSpec(branchSpec);
             String regexBranch = createRefRegexFromGlob(branchName);
 
             tn.setCredentialsProvider(getProvider());
-            try (FetchConnection c = tn.openFetch()) {
+            try (FetchConnection c = USE_PROTOCOL_V2
+                    ? tn.openFetch(
+                            Collections.emptyList(),
+                            lsRemotePrefixes(branchName, false, false).toArray(new String[0]))
+                    : tn.openFetch()) {
+                event.succeeded(c.getRefs().size(), 0);
                 for (final Ref r : c.getRefs()) {
                     if (r.getName().matches(regexBranch)) {
                         return r.getPeeledObjectId() != null ? r.getPeeledObjectId() : r.getObjectId();
@@ -963,10 +1199,33 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             }
         } catch (IOException | URISyntaxException | IllegalStateException e) {
             throw new GitException(e);
+        } finally {
+            event.commit();
         }
         return null;
     }
 
+    /**
+     * Runs an ls-remote query through the shared {@link LsRemoteCache}. Queries are only shared when the
+     * credentials used for the remote are known, a custom credentials provider is always queried directly.
+     */
+    private <T> T cachedLsRemote(String url, List<?> query, LsRemoteCache.Query<T> loader)
+            throws InterruptedException {
+        LsRemoteCache.Query<T> timedLoader = () -> {
+            try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "ls-remote")) {
+                T result = loader.run();
+                timer.succeeded();
+                return result;
+            }
+        };
+        CredentialsProvider prov = getProvider();
+        if (prov != null && !(prov instanceof SmartCredentialsProvider)) {
+            return timedLoader.run();
+        }
+        StandardCredentials cred = prov == null ? null : ((SmartCredentialsProvider) prov).getCredentials(url);
+        return LsRemoteCache.INSTANCE.get(url, cred == null ? null : cred.getId(), query, timedLoader);
+    }
+
     /**
      * Creates a empty dummy {@link Repository} to keep JGit happy where it wants a valid {@link Repository} operation
      * for remote objects.
@@ -993,14 +1252,84 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     @SuppressFBWarnings(value = "BC_UNCONFIRMED_CAST_OF_RETURN_VALUE", justification = "JGit interaction with spotbugs")
     @NonNull
     @Override
-    public Repository getRepository() throws GitException {
+    public synchronized Repository getRepository() throws GitException {
         try {
-            return new RepositoryBuilder().setWorkTree(workspace).build();
+            if (!CACHE_REPOSITORY) {
+                return new RepositoryBuilder().setWorkTree(workspace).build();
+            }
+            if (cachedRepository != null
+                    && !cachedRepositoryKey.equals(repositoryKey(cachedRepository.getDirectory()))) {
+                // Repository was deleted or replaced outside this client
+                close();
+            }
+            if (cachedRepository == null) {
+                Repository repo = new RepositoryBuilder().setWorkTree(workspace).build();
+                Object key = repositoryKey(repo.getDirectory());
+                if (key == null || !repo.getObjectDatabase().exists()) {
+                    // Nothing worth caching until the repository has been created
+                    return repo;
+                }
+                cachedRepository = repo;
+                cachedRepositoryKey = key;
+                scheduleIdleCheck(CACHE_REPOSITORY_IDLE_TIMEOUT);
+            }
+            cachedRepositoryLastUsed = System.currentTimeMillis();
+            // Caller's close() releases this reference, the cached reference keeps the repository open
+            cachedRepository.incrementOpen();
+            return cachedRepository;
         } catch (IOException e) {
             throw new GitException(e);
         }
     }
 
+    private void scheduleIdleCheck(long delayMillis) {
+        cachedRepositoryIdleCheck =
+                REPOSITORY_REAPER.schedule(this::closeIfIdle, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void closeIfIdle() {
+        if (cachedRepository == null) {
+            return;
+        }
+        long idle = System.currentTimeMillis() - cachedRepositoryLastUsed;
+        if (idle >= CACHE_REPOSITORY_IDLE_TIMEOUT) {
+            close();
+        } else {
+            scheduleIdleCheck(CACHE_REPOSITORY_IDLE_TIMEOUT - idle);
+        }
+    }
+
+    /* File system identity of a git directory, null if it does not exist */
+    private static Object repositoryKey(File gitDir) throws IOException {
+        if (gitDir == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(gitDir.toPath(), BasicFileAttributes.class);
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the repository reused by this client. Repositories returned by
+     * earlier calls to {@link #getRepository()} remain usable until their own
+     * {@link Repository#close()}. A later operation opens the repository again.
+     */
+    @Override
+    public synchronized void close() {
+        if (cachedRepositoryIdleCheck != null) {
+            cachedRepositoryIdleCheck.cancel(false);
+            cachedRepositoryIdleCheck = null;
+        }
+        if (cachedRepository != null) {
+            cachedRepository.close();
+            cachedRepository = null;
+            cachedRepositoryKey = null;
+        }
+    }
+
     /**
      * getWorkTree.
      *
@@ -1172,7 +1501,14 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 return this;
             }
 
+            private boolean closed = false;
+
             private void closeResources() {
+                if (closed) {
+                    // The repository is reference counted, must not be released twice
+                    return;
+                }
+                closed = true;
                 walk.close();
                 or.close();
                 repo.close();
@@ -1191,24 +1527,23 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
              * files will remain open.
              */
             @Override
-            public void execute() throws GitException {
+            public void execute() throws GitException, InterruptedException {
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "changelog")) {
+                    doExecute();
+                    timer.succeeded();
+                }
+            }
+
+            private void doExecute() throws GitException, InterruptedException {
                 if (out == null) {
                     throw new IllegalStateException(); // Match CliGitAPIImpl
                 }
                 try (PrintWriter pw = new PrintWriter(out, false)) {
-                    RawFormatter formatter = new RawFormatter();
                     if (!hasIncludedRev) {
                         /* If no rev has been included, assume HEAD */
                         this.includes("HEAD");
                     }
-                    for (RevCommit commit : walk) {
-                        // git whatachanged doesn't show the merge commits unless -m is given
-                        if (commit.getParentCount() > 1) {
-                            continue;
-                        }
-
-                        formatter.format(commit, null, pw, true);
-                    }
+                    writeChangelog(repo, walk, pw, CHANGELOG_THREADS);
                 } catch (IOException e) {
                     throw new GitException("Error: jgit whatchanged in " + workspace + " " + e.getMessage(), e);
                 } finally {
@@ -1219,9 +1554,129 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
     }
 
     /**
-     * Formats {@link RevCommit}.
+     * Writes the raw format of the commits of a changelog in the order of the walk. With more than one thread, the
+     * diffs of the commits which follow the one being written are computed concurrently, at most twice as many
+     * commits as there are threads are formatted ahead of the writer.
      */
-    class RawFormatter {
+    static void writeChangelog(Repository repo, Iterable<RevCommit> commits, PrintWriter pw, int threads)
+            throws IOException, InterruptedException {
+        if (threads <= 1) {
+            try (RawFormatter formatter = new RawFormatter(repo)) {
+                for (RevCommit commit : commits) {
+                    // git whatchanged doesn't show the merge commits unless -m is given
+                    if (commit.getParentCount() <= 1) {
+                        formatter.format(commit, null, pw, true);
+                    }
+                }
+            }
+            return;
+        }
+        /* Formatters are not thread safe, each task borrows one and the pool has no more threads than formatters */
+        BlockingQueue<RawFormatter> formatters = new ArrayBlockingQueue<>(threads);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Deque<Future<String>> pending = new ArrayDeque<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                formatters.add(new RawFormatter(repo));
+            }
+            for (RevCommit commit : commits) {
+                // git whatchanged doesn't show the merge commits unless -m is given
+                if (commit.getParentCount() > 1) {
+                    continue;
+                }
+                pending.add(pool.submit(() -> {
+                    RawFormatter formatter = formatters.take();
+                    try {
+                        StringWriter sw = new StringWriter();
+                        try (PrintWriter commitWriter = new PrintWriter(sw)) {
+                            formatter.format(commit, null, commitWriter, true);
+                        }
+                        return sw.toString();
+                    } finally {
+                        formatters.add(formatter);
+                    }
+                }));
+                if (pending.size() >= 2 * threads) {
+                    pw.print(formatted(pending.remove()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                pw.print(formatted(pending.remove()));
+            }
+        } finally {
+            pool.shutdownNow();
+            /* Running tasks return their formatter when they end, wait for them so that every formatter is closed */
+            boolean interrupted = false;
+            while (!pool.isTerminated()) {
+                try {
+                    pool.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            List<RawFormatter> idle = new ArrayList<>();
+            formatters.drainTo(idle);
+            for (RawFormatter formatter : idle) {
+                formatter.close();
+            }
+        }
+    }
+
+    private static String formatted(Future<String> commit) throws IOException, InterruptedException {
+        try {
+            return commit.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Formats {@link RevCommit}. The object reader, tree walk and rename detector of a formatter are reused for every
+     * commit it formats, so a formatter must only be used by one thread at a time and must be closed. Diffs are kept
+     * in the {@link DiffCache} of the repository.
+     */
+    static class RawFormatter implements AutoCloseable {
+        private final ObjectReader or;
+        private final TreeWalk tw;
+        private final RenameDetector rd;
+        private final DiffCache diffCache;
+        private final String diffSettings;
+        /* The last diff may differ from a diff computed without time limit, it is not cached */
+        private boolean renameTimedOut;
+
+        RawFormatter(Repository repo) {
+            this(repo, DiffCache.forRepository(repo));
+        }
+
+        RawFormatter(Repository repo, @CheckForNull DiffCache diffCache) {
+            or = repo.newObjectReader();
+            tw = new TreeWalk(or);
+            tw.setRecursive(true);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            rd = new RenameDetector(or, repo.getConfig().get(DiffConfig.KEY));
+            if (RenameBudget.RENAME_LIMIT != null) {
+                rd.setRenameLimit(RenameBudget.RENAME_LIMIT);
+            }
+            this.diffCache = diffCache;
+            diffSettings = "raw renameLimit=" + rd.getRenameLimit() + " renameScore=" + rd.getRenameScore();
+        }
+
+        @Override
+        public void close() {
+            tw.close();
+            or.close();
+        }
+
         private boolean hasNewPath(DiffEntry d) {
             return d.getChangeType() == ChangeType.COPY || d.getChangeType() == ChangeType.RENAME;
         }
@@ -1245,6 +1700,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
         public static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ssZ";
 
+        private static final FastDateFormat ISO = FastDateFormat.getInstance(ISO_8601);
+
         /**
          * Formats a commit into the raw format.
          *
@@ -1268,11 +1725,10 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             for (RevCommit p : commit.getParents()) {
                 pw.printf("parent %s\n", p.name());
             }
-            FastDateFormat iso = FastDateFormat.getInstance(ISO_8601);
             PersonIdent a = commit.getAuthorIdent();
-            pw.printf("author %s <%s> %s\n", a.getName(), a.getEmailAddress(), iso.format(a.getWhen()));
+            pw.printf("author %s <%s> %s\n", a.getName(), a.getEmailAddress(), ISO.format(a.getWhen()));
             PersonIdent c = commit.getCommitterIdent();
-            pw.printf("committer %s <%s> %s\n", c.getName(), c.getEmailAddress(), iso.format(c.getWhen()));
+            pw.printf("committer %s <%s> %s\n", c.getName(), c.getEmailAddress(), ISO.format(c.getWhen()));
 
             // indent commit messages by 4 chars
             String msg = commit.getFullMessage();
@@ -1284,60 +1740,79 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             pw.println(msg);
 
+            if (!useRawOutput) {
+                return;
+            }
             // see man git-diff-tree for the format
-            try (Repository repo = getRepository();
-                    ObjectReader or = repo.newObjectReader();
-                    TreeWalk tw = new TreeWalk(or)) {
-                if (parent != null) {
-                    /* Caller provided a parent commit, use it */
-                    tw.reset(parent.getTree(), commit.getTree());
-                } else {
-                    if (commit.getParentCount() > 0) {
-                        /* Caller failed to provide parent, but a parent
-                         * is available, so use the parent in the walk
-                         */
-                        tw.reset(commit.getParent(0).getTree(), commit.getTree());
-                    } else {
-                        /* First commit in repo has 0 parent count, but
-                         * the TreeWalk requires exactly two nodes for its
-                         * walk.  Use the same node twice to satisfy
-                         * TreeWalk. See JENKINS-22343 for details.
-                         */
-                        tw.reset(commit.getTree(), commit.getTree());
-                    }
+            RevCommit diffParent = parent;
+            if (diffParent == null && commit.getParentCount() > 0) {
+                /* Caller failed to provide parent, but a parent
+                 * is available, so use the parent in the walk
+                 */
+                diffParent = commit.getParent(0);
+            }
+            String key = diffCache == null ? null : DiffCache.key(commit, diffParent, diffSettings);
+            String diff = key == null ? null : diffCache.get(key);
+            if (diff == null) {
+                diff = rawDiff(commit, diffParent);
+                if (key != null && !renameTimedOut) {
+                    diffCache.put(key, diff);
                 }
-                tw.setRecursive(true);
-                tw.setFilter(TreeFilter.ANY_DIFF);
+            }
+            pw.print(diff);
+        }
 
-                final RenameDetector rd = new RenameDetector(repo);
+        @SuppressFBWarnings(
+                value = "VA_FORMAT_STRING_USES_NEWLINE",
+                justification = "Windows git implementation requires specific line termination")
+        private String rawDiff(RevCommit commit, RevCommit parent) throws IOException {
+            if (parent != null) {
+                tw.reset(parent.getTree(), commit.getTree());
+            } else {
+                /* First commit in repo has 0 parent count, but
+                 * the TreeWalk requires exactly two nodes for its
+                 * walk.  Use the same node twice to satisfy
+                 * TreeWalk. See JENKINS-22343 for details.
+                 */
+                tw.reset(commit.getTree(), commit.getTree());
+            }
 
-                rd.reset();
-                rd.addAll(DiffEntry.scan(tw));
-                List<DiffEntry> diffs;
-                try {
-                    diffs = rd.compute(or, null);
-                } catch (CanceledException e) {
-                    throw new IOException(e);
-                }
-                if (useRawOutput) {
-                    for (DiffEntry diff : diffs) {
-                        pw.printf(
-                                ":%06o %06o %s %s %s\t%s",
-                                diff.getOldMode().getBits(),
-                                diff.getNewMode().getBits(),
-                                diff.getOldId().name(),
-                                diff.getNewId().name(),
-                                statusOf(diff),
-                                diff.getChangeType() == ChangeType.ADD ? diff.getNewPath() : diff.getOldPath());
-
-                        if (hasNewPath(diff)) {
-                            pw.printf(" %s", diff.getNewPath()); // copied to
-                        }
-                        pw.println();
-                        pw.println();
+            rd.reset();
+            List<DiffEntry> entries = DiffEntry.scan(tw);
+            rd.addAll(entries);
+            List<DiffEntry> diffs;
+            renameTimedOut = false;
+            try {
+                diffs = rd.compute(or, RenameBudget.deadline());
+                if (rd.isOverRenameLimit()) {
+                    RenameBudget.limitReached();
+                }
+            } catch (CanceledException e) {
+                /* Rename detection exceeded its time limit, report added and deleted files instead */
+                renameTimedOut = true;
+                RenameBudget.limitReached();
+                diffs = entries;
+            }
+            StringWriter sw = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(sw)) {
+                for (DiffEntry diff : diffs) {
+                    pw.printf(
+                            ":%06o %06o %s %s %s\t%s",
+                            diff.getOldMode().getBits(),
+                            diff.getNewMode().getBits(),
+                            diff.getOldId().name(),
+                            diff.getNewId().name(),
+                            statusOf(diff),
+                            diff.getChangeType() == ChangeType.ADD ? diff.getNewPath() : diff.getOldPath());
+
+                    if (hasNewPath(diff)) {
+                        pw.printf(" %s", diff.getNewPath()); // copied to
                     }
+                    pw.println();
+                    pw.println();
                 }
             }
+            return sw.toString();
         }
     }
 
@@ -1471,9 +1946,19 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             @Override
             public void execute() throws GitException {
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "clone")) {
+                    doExecute();
+                    timer.succeeded();
+                }
+            }
+
+            private void doExecute() throws GitException {
                 Repository repository = null;
 
                 try {
+                    // Release the repository which is about to be deleted
+                    close();
+
                     // the directory needs to be clean or else JGit complains
                     if (workspace.exists()) {
                         Util.deleteContentsRecursive(workspace);
@@ -1561,7 +2046,7 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                         }
                         fetch.setDepth(depth);
                     }
-                    fetch.call();
+                    callFetch(fetch, url);
 
                     StoredConfig config = repository.getConfig();
                     config.setString("remote", remote, "url", url);
@@ -2021,6 +2506,13 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             @Override
             public void execute() throws GitException {
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "push")) {
+                    doExecute();
+                    timer.succeeded();
+                }
+            }
+
+            private void doExecute() throws GitException {
                 try (Repository repo = getRepository()) {
                     RefSpec ref =
                             (refspec != null) ? new RefSpec(fixRefSpec(refspec, repo)) : Transport.REFSPEC_PUSH_ALL;
@@ -2045,7 +2537,20 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                         pc.setPushTags();
                     }
                     setTransportTimeout(pc, "push", timeout);
-                    Iterable<PushResult> results = pc.call();
+                    GitTransportEvent event = GitTransportEvent.start("push", remote.toPrivateASCIIString());
+                    Iterable<PushResult> results;
+                    try {
+                        results = pc.call();
+                        int advertised = 0;
+                        int updated = 0;
+                        for (PushResult result : results) {
+                            advertised += result.getAdvertisedRefs().size();
+                            updated += result.getRemoteUpdates().size();
+                        }
+                        event.succeeded(advertised, updated);
+                    } finally {
+                        event.commit();
+                    }
                     for (PushResult result : results) {
                         for (RemoteRefUpdate update : result.getRemoteUpdates()) {
                             RemoteRefUpdate.Status status = update.getStatus();
@@ -2129,6 +2634,7 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             private boolean firstParent;
             private String refspec;
             private List<ObjectId> out;
+            private ObjectIdArray packedOut;
 
             @Override
             public RevListCommand all() {
@@ -2161,6 +2667,14 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             @Override
             public RevListCommand to(List<ObjectId> revs) {
                 this.out = revs;
+                this.packedOut = null;
+                return this;
+            }
+
+            @Override
+            public RevListCommand to(ObjectIdArray revs) {
+                this.packedOut = revs;
+                this.out = null;
                 return this;
             }
 
@@ -2170,8 +2684,24 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 return this;
             }
 
+            /* The packed array keeps only the value of the id, a list needs a copy detached from the walk */
+            private void add(RevCommit c) {
+                if (packedOut != null) {
+                    packedOut.add(c);
+                } else {
+                    out.add(c.copy());
+                }
+            }
+
             @Override
             public void execute() throws GitException {
+                try (GitCommandTimer timer = GitCommandTimer.start(JGitTool.MAGIC_EXENAME, "rev-list")) {
+                    doExecute();
+                    timer.succeeded();
+                }
+            }
+
+            private void doExecute() throws GitException {
                 if (firstParent) {
                     throw new UnsupportedOperationException("not implemented yet");
                 }
@@ -2181,16 +2711,16 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                         RevWalk walk = new RevWalk(or)) {
 
                     if (nowalk) {
-                        if (out == null) {
+                        if (out == null && packedOut == null) {
                             throw new GitException("RevListCommand requires a 'to' value");
                         }
                         RevCommit c = walk.parseCommit(repo.resolve(refspec));
-                        out.add(c.copy());
+                        add(c);
 
                         if (all) {
                             for (Ref r : repo.getAllRefs().values()) {
                                 c = walk.parseCommit(r.getObjectId());
-                                out.add(c.copy());
+                                add(c);
                             }
                         }
                         return;
@@ -2205,11 +2735,11 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                     walk.setRetainBody(false);
                     walk.sort(RevSort.COMMIT_TIME_DESC);
 
-                    if (out == null) {
+                    if (out == null && packedOut == null) {
                         throw new GitException("RevListCommand requires a 'to' value");
                     }
                     for (RevCommit c : walk) {
-                        out.add(c.copy());
+                        add(c);
                     }
                 } catch (IOException e) {
                     throw new GitException(e);
@@ -2288,8 +2818,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
 
             List<String> r = new ArrayList<>();
             StringWriter sw = new StringWriter();
-            RawFormatter f = new RawFormatter();
-            try (PrintWriter pw = new PrintWriter(sw)) {
+            try (RawFormatter f = new RawFormatter(repo);
+                    PrintWriter pw = new PrintWriter(sw)) {
                 for (RevCommit c : w) {
                     // do not duplicate merge commits unless using raw output
                     if (c.getParentCount() <= 1 || !useRawOutput) {
@@ -2484,13 +3014,13 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
      * "git branch --contains=X" is a pretty plain traversal. We walk the commit graph until we find the target
      * revision we want.
      *
-     * Doing this individually for every branch is too expensive, so we use flags to track multiple branches
-     * at once. JGit gives us 24 bits of flags, so we divide up all the branches to batches of 24, then
-     * perform a graph walk. For flags to carry correctly over from children to parents, all the children
-     * must be visited before we see the parent. This requires a topological sorting order. In addition,
-     * we want kind of a "breadth first search" to avoid going down a part of the graph that's not terribly
-     * interesting and topo sort helps with that, too (imagine the following commit graph,
-     * and compute "git branch --contains=t"; we don't want to visit all the way to c1 before visiting c.)
+     * Doing this individually for every branch is too expensive, so all branches are tracked in a single
+     * walk. Every commit carries a bit set of the branches that reach it, which is handed down from children
+     * to parents. For the bits to carry correctly over from children to parents, all the children must be
+     * visited before we see the parent. This requires a topological sorting order. In addition, we want kind
+     * of a "breadth first search" to avoid going down a part of the graph that's not terribly interesting and
+     * topo sort helps with that, too (imagine the following commit graph, and compute "git branch --contains=t";
+     * we don't want to visit all the way to c1 before visiting c.)
      *
      *
      *   INIT -&gt; c1 -&gt; c2 -&gt; ... long history of commits --+--&gt; c1000 --+--&gt; branch1
@@ -2498,8 +3028,10 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
      *                                                      --&gt; t ------
      *
      * <p>
-     * Since we reuse {@link RevWalk}, it'd be nice to flag commits reachable from 't' as uninteresting
-     * and keep them across resets, but I'm not sure how to do it.
+     * Anything reachable from the parents of the target cannot contain the target, so those commits are
+     * marked uninteresting and never visited. Only commits between the branch tips and the target are
+     * walked, once, regardless of the number of branches. A bit set is released as soon as it has been
+     * handed to the parents of its commit, so memory is bounded by the width of the walk frontier.
      */
     @Override
     public List<Branch> getBranchesContaining(String revspec, boolean allBranches)
@@ -2516,50 +3048,49 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             }
             RevCommit target = walk.parseCommit(id);
 
-            // we can track up to 24 flags at a time in JGit, so that's how many branches we will traverse in every
-            // iteration
-            List<RevFlag> flags = new ArrayList<>(24);
-            for (int i = 0; i < 24; i++) {
-                flags.add(walk.newFlag("branch" + i));
+            List<Ref> branches = getAllBranchRefs(allBranches);
+            // branches reaching each commit that has not been visited yet
+            Map<RevCommit, BitSet> reachedBy = new HashMap<>();
+            for (int idx = 0; idx < branches.size(); idx++) {
+                RevCommit c = walk.parseCommit(branches.get(idx).getObjectId());
+                walk.markStart(c);
+                reachedBy.computeIfAbsent(c, k -> new BitSet(branches.size())).set(idx);
             }
-            walk.carry(flags);
 
-            List<Branch> result = new ArrayList<>(); // we'll built up the return value in here
-
-            List<Ref> branches = getAllBranchRefs(allBranches);
-            while (!branches.isEmpty()) {
-                List<Ref> batch = branches.subList(0, Math.min(flags.size(), branches.size()));
-                branches = branches.subList(batch.size(), branches.size()); // remaining
+            // anything reachable from the target commit in question is not worth traversing.
+            for (RevCommit p : target.getParents()) {
+                walk.markUninteresting(p);
+            }
 
-                walk.reset();
-                int idx = 0;
-                for (Ref r : batch) {
-                    RevCommit c = walk.parseCommit(r.getObjectId());
-                    walk.markStart(c);
-                    c.add(flags.get(idx));
-                    idx++;
+            BitSet containing = null;
+            for (RevCommit c : walk) {
+                BitSet bits = reachedBy.remove(c);
+                if (c.equals(target)) {
+                    containing = bits;
+                    break;
                 }
-
-                // anything reachable from the target commit in question is not worth traversing.
-                for (RevCommit p : target.getParents()) {
-                    walk.markUninteresting(p);
+                if (bits == null) {
+                    continue;
                 }
-
-                for (RevCommit c : walk) {
-                    if (c.equals(target)) {
-                        break;
+                boolean bitsShared = false;
+                for (RevCommit p : c.getParents()) {
+                    BitSet parentBits = reachedBy.get(p);
+                    if (parentBits != null) {
+                        parentBits.or(bits);
+                    } else {
+                        // hand the set of this commit to its first parent, copy it for the others
+                        reachedBy.put(p, bitsShared ? (BitSet) bits.clone() : bits);
+                        bitsShared = true;
                     }
                 }
+            }
 
-                idx = 0;
-                for (Ref r : batch) {
-                    if (target.has(flags.get(idx))) {
-                        result.add(new Branch(r));
-                    }
-                    idx++;
+            List<Branch> result = new ArrayList<>(); // we'll built up the return value in here
+            if (containing != null) {
+                for (int idx = containing.nextSetBit(0); idx >= 0; idx = containing.nextSetBit(idx + 1)) {
+                    result.add(new Branch(branches.get(idx)));
                 }
             }
-
             return result;
         } catch (IOException e) {
             throw new GitException(e);
@@ -2749,6 +3280,10 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
      * We call it "depth", following the variable name in C Git.
      * As we walk further and find enough tags, we go into wind-down mode and only walk
      * to the point of accurately determining all the depths.
+     *
+     * <p>
+     * The peeled tags and the descriptions computed from them are kept in a {@link TagIndex}
+     * until the tags change, so describing the same commit again does not walk the history.
      */
     @Override
     public String describe(String tip) throws GitException, InterruptedException {
@@ -2757,14 +3292,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             final RevWalk w = new RevWalk(or); // How to dispose of this ?
             w.setRetainBody(false);
 
-            Map<ObjectId, Ref> tags = new HashMap<>();
-            for (Ref r : repo.getTags().values()) {
-                ObjectId key = repo.peel(r).getPeeledObjectId();
-                if (key == null) {
-                    key = r.getObjectId();
-                }
-                tags.put(key, r);
-            }
+            TagIndex tagIndex = TagIndex.forRepository(repo);
+            Map<ObjectId, Ref> tags = tagIndex.update(repo);
 
             final RevFlagSet allFlags = new RevFlagSet(); // combined flags of all the Candidate instances
 
@@ -2798,12 +3327,8 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                     return c.has(flag);
                 }
 
-                public String describe(ObjectId tip) throws IOException {
-                    return String.format(
-                            "%s-%d-g%s",
-                            tag.getName().substring(R_TAGS.length()),
-                            depth,
-                            or.abbreviate(tip).name());
+                public String describe() {
+                    return String.format("%s-%d", tag.getName().substring(R_TAGS.length()), depth);
                 }
             }
             List<Candidate> candidates = new ArrayList<>(); // all the candidates we find
@@ -2815,6 +3340,11 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
                 return lucky.getName().substring(R_TAGS.length());
             }
 
+            String known = tagIndex.description(tipId);
+            if (known != null) {
+                return known + "-g" + or.abbreviate(tipId).name();
+            }
+
             w.markStart(w.parseCommit(tipId));
 
             int maxCandidates = 10;
@@ -2880,7 +3410,9 @@ public class JGitAPIImpl extends LegacyCompatibleGitAPIImpl {
             // if all the nodes are dominated by all the tags, the walk stops
             candidates.sort(Comparator.comparingInt((Candidate o) -> o.depth));
 
-            return candidates.get(0).describe(tipId);
+            String description = candidates.get(0).describe();
+            tagIndex.remember(tags, tipId, description);
+            return description + "-g" + or.abbreviate(tipId).name();
         } catch (IOException e) {
             throw new GitException(e);
         }
@@ -0,0 +1,204 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.plugins.git.GitException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.transport.URIish;
+
+/**
+ * Controller wide cache of the results of ls-remote queries.
+ * <p>
+ * Multibranch scans and polling ask the same remote repository for its
+ * references many times within a few seconds. Results are kept for a short
+ * time, keyed by remote URL, credentials id and query, so that those callers
+ * share one network round-trip. A caller asking the same question as a query
+ * which is still running waits for that query instead of starting another one.
+ * Failed queries are not cached. Queries of local paths and relative URLs
+ * depend on the directory they run in and are never cached.
+ */
+final class LsRemoteCache {
+
+    /**
+     * Milliseconds an ls-remote result may be reused, 0 disables the cache.
+     *
+     * <code>TTL=Long.getLong(LsRemoteCache.class.getName() + ".ttl", 0L)</code>.
+     *
+     * Results are reused by every git client on the controller that queries
+     * the same remote with the same credentials within this time. Changes
+     * pushed to the remote during that time are not seen until the result
+     * expires.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.LsRemoteCache.ttl=5000'
+     * to share ls-remote results for five seconds.
+     */
+    static final long TTL = Long.getLong(LsRemoteCache.class.getName() + ".ttl", 0L);
+
+    /**
+     * Maximum number of cached results, the oldest result is dropped first.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(LsRemoteCache.class.getName() + ".maxEntries", 1000);
+
+    static final LsRemoteCache INSTANCE = new LsRemoteCache(TTL, MAX_ENTRIES);
+
+    /**
+     * Remote query whose result can be cached.
+     *
+     * @param <T> type of the query result
+     */
+    @FunctionalInterface
+    interface Query<T> {
+        T run() throws InterruptedException;
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    /* Insertion ordered so that the oldest entry is evicted first, guarded by this */
+    private final Map<Key, Entry> entries = new LinkedHashMap<>();
+
+    LsRemoteCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Return the cached result of a query, or run the query if there is no
+     * current result. Callers must not modify the returned object, as it is
+     * shared with other callers.
+     *
+     * @param url remote repository URL
+     * @param credentialsId id of the credentials used to query the remote, or null if none
+     * @param query values which identify the query, its result is only shared with identical queries
+     * @param loader runs the query against the remote repository
+     * @param <T> type of the query result
+     * @return result of the query, possibly obtained by an earlier or concurrent caller
+     * @throws InterruptedException if interrupted while running or waiting for the query
+     */
+    <T> T get(
+            @NonNull String url,
+            @CheckForNull String credentialsId,
+            @NonNull List<?> query,
+            @NonNull Query<T> loader)
+            throws InterruptedException {
+        if (ttlNanos <= 0 || maxEntries <= 0 || !isRemote(url)) {
+            return loader.run();
+        }
+        Key key = new Key(url, credentialsId, query);
+        while (true) {
+            Entry entry;
+            boolean owner = false;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry == null || entry.isExpired()) {
+                    entries.remove(key);
+                    entry = new Entry();
+                    entries.put(key, entry);
+                    evictOldest();
+                    owner = true;
+                }
+            }
+            if (owner) {
+                try {
+                    T value = loader.run();
+                    entry.expiresAt = System.nanoTime() + ttlNanos;
+                    entry.result.complete(value);
+                    return value;
+                } catch (InterruptedException | RuntimeException | Error e) {
+                    discard(key, entry);
+                    entry.result.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.result.get();
+                return value;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    continue; // Query was abandoned by an interrupted caller, ask again
+                }
+                throw new GitException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param url repository URL
+     * @return true if the URL names a repository on another host, false for local paths and relative URLs
+     */
+    static boolean isRemote(@NonNull String url) {
+        try {
+            return new URIish(url).isRemote();
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private synchronized void discard(Key key, Entry entry) {
+        entries.remove(key, entry);
+    }
+
+    private void evictOldest() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        volatile long expiresAt;
+
+        boolean isExpired() {
+            return result.isDone() && System.nanoTime() - expiresAt >= 0;
+        }
+    }
+
+    private static final class Key {
+        private final String url;
+        private final String credentialsId;
+        private final List<?> query;
+
+        Key(String url, String credentialsId, List<?> query) {
+            this.url = url;
+            this.credentialsId = credentialsId;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return url.equals(other.url)
+                    && Objects.equals(credentialsId, other.credentialsId)
+                    && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, credentialsId, query);
+        }
+    }
+}
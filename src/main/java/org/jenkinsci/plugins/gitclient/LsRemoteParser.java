@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Parser of the output of {@code git ls-remote}, shared by the ls-remote methods of {@link CliGitAPIImpl}.
+ * <p>
+ * Servers like Gerrit advertise hundreds of thousands of references. The parser walks the output once, decodes object
+ * ids directly from the characters of the output and creates a single string per reference name, rather than
+ * splitting the output into lines and each line into substrings.
+ */
+@Restricted(NoExternalUse.class)
+public final class LsRemoteParser {
+
+    private static final String SYMREF_PREFIX = "ref:";
+    private static final String PEELED_SUFFIX = "^{}";
+
+    /**
+     * Receives the entries of the output in order.
+     */
+    public interface Listener {
+        /**
+         * @param name reference name, without the "^{}" suffix of a peeled entry
+         * @param id object id of the entry
+         * @param peeled true if the entry is the peeled object of an annotated tag
+         */
+        void ref(@NonNull String name, @NonNull ObjectId id, boolean peeled);
+
+        /**
+         * Called for the entries of {@code ls-remote --symref}.
+         *
+         * @param name name of the symbolic reference, for example "HEAD"
+         * @param target name of the reference it points to
+         */
+        default void symbolicRef(@NonNull String name, @NonNull String target) {}
+
+        /**
+         * @param line line which is neither a reference nor a symbolic reference
+         */
+        default void unexpected(@NonNull String line) {}
+    }
+
+    private LsRemoteParser() {}
+
+    /**
+     * Parse the output of {@code git ls-remote}.
+     *
+     * @param output output of the command
+     * @param listener receives the entries
+     */
+    public static void parse(@NonNull String output, @NonNull Listener listener) {
+        int length = output.length();
+        int pos = 0;
+        while (pos < length) {
+            int eol = output.indexOf('\n', pos);
+            if (eol < 0) {
+                eol = length;
+            }
+            int end = eol > pos && output.charAt(eol - 1) == '\r' ? eol - 1 : eol;
+            if (end > pos) {
+                parseLine(output, pos, end, listener);
+            }
+            pos = eol + 1;
+        }
+    }
+
+    private static void parseLine(String output, int start, int end, Listener listener) {
+        if (output.startsWith(SYMREF_PREFIX, start)) {
+            int targetStart = skipWhitespace(output, start + SYMREF_PREFIX.length(), end);
+            int targetEnd = skipNonWhitespace(output, targetStart, end);
+            int nameStart = skipWhitespace(output, targetEnd, end);
+            if (targetStart > start + SYMREF_PREFIX.length()
+                    && targetEnd > targetStart
+                    && nameStart > targetEnd
+                    && nameStart < end
+                    && skipNonWhitespace(output, nameStart, end) == end) {
+                listener.symbolicRef(output.substring(nameStart, end), output.substring(targetStart, targetEnd));
+                return;
+            }
+        } else if (end - start > Constants.OBJECT_ID_STRING_LENGTH + 1
+                && Character.isWhitespace(output.charAt(start + Constants.OBJECT_ID_STRING_LENGTH))) {
+            ObjectId id = parseId(output, start);
+            if (id != null) {
+                int nameStart = start + Constants.OBJECT_ID_STRING_LENGTH + 1;
+                boolean peeled = end - nameStart > PEELED_SUFFIX.length()
+                        && output.startsWith(PEELED_SUFFIX, end - PEELED_SUFFIX.length());
+                int nameEnd = peeled ? end - PEELED_SUFFIX.length() : end;
+                listener.ref(output.substring(nameStart, nameEnd), id, peeled);
+                return;
+            }
+        }
+        listener.unexpected(output.substring(start, end));
+    }
+
+    /**
+     * Decode an object id from its hexadecimal digits.
+     *
+     * @param text text which contains the object id
+     * @param offset position of the first digit
+     * @return the object id, null if the text has no object id at that position
+     */
+    @CheckForNull
+    public static ObjectId parseId(@NonNull CharSequence text, int offset) {
+        if (offset < 0 || text.length() - offset < Constants.OBJECT_ID_STRING_LENGTH) {
+            return null;
+        }
+        int[] words = new int[5];
+        for (int i = 0; i < Constants.OBJECT_ID_STRING_LENGTH; i++) {
+            char c = text.charAt(offset + i);
+            int digit = c < 128 ? Character.digit(c, 16) : -1;
+            if (digit < 0) {
+                return null;
+            }
+            words[i >> 3] = words[i >> 3] << 4 | digit;
+        }
+        return new ObjectId(words[0], words[1], words[2], words[3], words[4]);
+    }
+
+    private static int skipWhitespace(String text, int pos, int end) {
+        while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipNonWhitespace(String text, int pos, int end) {
+        while (pos < end && !Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,189 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Growable array of object ids packed into a single byte array, 20 bytes per
+ * object id.
+ * <p>
+ * A {@code List<ObjectId>} holds one object per entry, which costs several
+ * times the size of the object id itself. Commands which report hundreds of
+ * thousands of object ids, like {@link RevListCommand}, can fill an
+ * {@code ObjectIdArray} instead. {@link #asList()} adapts the array to the
+ * {@link List} API for callers which expect a list.
+ *
+ * @since 4.7.0
+ */
+public final class ObjectIdArray implements Iterable<ObjectId>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int ENTRY_SIZE = Constants.OBJECT_ID_LENGTH;
+
+    private byte[] ids;
+    private int size;
+
+    /**
+     * Create an empty array.
+     */
+    public ObjectIdArray() {
+        this(16);
+    }
+
+    /**
+     * Create an empty array with room for a number of object ids.
+     *
+     * @param initialCapacity number of object ids the array holds before it grows
+     */
+    public ObjectIdArray(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        }
+        ids = new byte[initialCapacity * ENTRY_SIZE];
+    }
+
+    /**
+     * Append an object id.
+     *
+     * @param id object id to append, only its value is kept
+     */
+    public void add(@NonNull AnyObjectId id) {
+        ensureCapacity(size + 1);
+        id.copyRawTo(ids, size * ENTRY_SIZE);
+        size++;
+    }
+
+    /**
+     * Append an object id given as 40 hexadecimal digits, without creating an
+     * {@link ObjectId} for it.
+     *
+     * @param name object id in hexadecimal
+     * @throws IllegalArgumentException if name is not a 40 digit hexadecimal object id
+     */
+    public void add(@NonNull String name) {
+        if (name.length() != Constants.OBJECT_ID_STRING_LENGTH) {
+            throw new IllegalArgumentException("Invalid id: " + name);
+        }
+        ensureCapacity(size + 1);
+        int offset = size * ENTRY_SIZE;
+        for (int i = 0; i < ENTRY_SIZE; i++) {
+            int high = Character.digit(name.charAt(2 * i), 16);
+            int low = Character.digit(name.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid id: " + name);
+            }
+            ids[offset + i] = (byte) (high << 4 | low);
+        }
+        size++;
+    }
+
+    /**
+     * @param index position of the object id
+     * @return a new {@link ObjectId} with the value at that position
+     * @throws IndexOutOfBoundsException if index is not less than {@link #size()}
+     */
+    @NonNull
+    public ObjectId get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ObjectId.fromRaw(ids, index * ENTRY_SIZE);
+    }
+
+    /**
+     * @return number of object ids in the array
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the array holds no object ids
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Drop the object ids at and after a position, for commands which fail
+     * after they appended part of their result.
+     *
+     * @param newSize number of object ids to keep
+     */
+    void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size: " + newSize + ", current size: " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Release unused capacity, for arrays which are kept after they have been filled.
+     */
+    public void trimToSize() {
+        if (ids.length > size * ENTRY_SIZE) {
+            ids = Arrays.copyOf(ids, size * ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * View of this array as a list. The list reads through to the array,
+     * creating an {@link ObjectId} for every element read, and adding to the
+     * list appends to the array. Other modifications are not supported.
+     *
+     * @return list backed by this array
+     */
+    @NonNull
+    public List<ObjectId> asList() {
+        return new ListView();
+    }
+
+    @Override
+    public Iterator<ObjectId> iterator() {
+        return asList().iterator();
+    }
+
+    private void ensureCapacity(int entries) {
+        long required = (long) entries * ENTRY_SIZE;
+        if (required <= ids.length) {
+            return;
+        }
+        long grown = Math.max(required, ids.length + (ids.length >> 1) + ENTRY_SIZE);
+        // Keep whole entries below the maximum array size
+        long limit = (Integer.MAX_VALUE - 8) / ENTRY_SIZE * (long) ENTRY_SIZE;
+        if (required > limit) {
+            throw new OutOfMemoryError("Too many object ids: " + entries);
+        }
+        ids = Arrays.copyOf(ids, (int) Math.min(grown - grown % ENTRY_SIZE, limit));
+    }
+
+    private final class ListView extends AbstractList<ObjectId> implements RandomAccess {
+        @Override
+        public ObjectId get(int index) {
+            return ObjectIdArray.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void add(int index, ObjectId id) {
+            if (index != size) {
+                throw new UnsupportedOperationException("Object ids can only be appended");
+            }
+            ObjectIdArray.this.add(id);
+            modCount++;
+        }
+    }
+}
@@ -79,16 +79,16 @@ class RemoteGitImpl implements GitClient, hudson.plugins.git.IGitAPI, Serializab
                 parameterTypes[i] = paramTypes[i].getName();
             }
             for (int i = 0; i < args.length; i++) {
-                if (args[i] instanceof OutputStream) {
+                if (args[i] instanceof OutputStream && !(args[i] instanceof RemoteOutputStream)) {
                     args[i] = new RemoteOutputStream((OutputStream) args[i]);
                 }
-                if (args[i] instanceof Writer) {
+                if (args[i] instanceof Writer && !(args[i] instanceof RemoteWriter)) {
                     args[i] = new RemoteWriter((Writer) args[i]);
                 }
             }
         }
 
-        public void replay(Object target) throws InvocationTargetException, IllegalAccessException {
+        public Object replay(Object target) throws InvocationTargetException, IllegalAccessException {
             OUTER:
             for (Method m : target.getClass().getMethods()) {
                 if (m.getName().equals(methodName) && m.getParameterTypes().length == parameterTypes.length) {
@@ -99,8 +99,7 @@ class RemoteGitImpl implements GitClient, hudson.plugins.git.IGitAPI, Serializab
                         }
                     }
                     // matched
-                    m.invoke(target, args);
-                    return;
+                    return m.invoke(target, args);
                 }
             }
             throw new IllegalStateException(
@@ -111,20 +110,45 @@ class RemoteGitImpl implements GitClient, hudson.plugins.git.IGitAPI, Serializab
     }
 
     private <T extends GitCommand> T command(Class<T> type) {
-        return type.cast(Proxy.newProxyInstance(
-                type.getClassLoader(), new Class[] {type}, new CommandInvocationHandler(type, this)));
+        return CommandInvocationHandler.record(type, (command, invocations) -> {
+            try {
+                channel.call(new GitCommandMasterToSlaveCallable(proxy, command, invocations));
+            } catch (IOException e) {
+                throw new GitException(e);
+            }
+        });
     }
 
-    private static class CommandInvocationHandler implements InvocationHandler, GitCommand, Serializable {
+    /**
+     * Records the calls of a {@link GitCommand} and passes them to an {@link Execution} when the command is executed.
+     */
+    static class CommandInvocationHandler implements InvocationHandler, GitCommand {
+
+        /**
+         * Runs a recorded command.
+         */
+        interface Execution {
+            void execute(Class<? extends GitCommand> command, List<Invocation> invocations)
+                    throws GitException, InterruptedException;
+        }
+
         private final Class<? extends GitCommand> command;
         private final List<Invocation> invocations = new ArrayList<>();
-        private final transient Channel channel;
-        private final GitClient proxy;
+        private final Execution execution;
 
-        private CommandInvocationHandler(Class<? extends GitCommand> command, RemoteGitImpl owner) {
+        private CommandInvocationHandler(Class<? extends GitCommand> command, Execution execution) {
             this.command = command;
-            this.channel = owner.channel;
-            this.proxy = owner.proxy;
+            this.execution = execution;
+        }
+
+        /**
+         * @param type type of the command
+         * @param execution runs the command with the recorded calls when it is executed
+         * @return command which records its calls
+         */
+        static <T extends GitCommand> T record(Class<T> type, Execution execution) {
+            return type.cast(Proxy.newProxyInstance(
+                    type.getClassLoader(), new Class[] {type}, new CommandInvocationHandler(type, execution)));
         }
 
         @Override
@@ -149,40 +173,75 @@ class RemoteGitImpl implements GitClient, hudson.plugins.git.IGitAPI, Serializab
 
         @Override
         public void execute() throws GitException, InterruptedException {
-            try {
-                channel.call(new GitCommandMasterToSlaveCallable());
-            } catch (IOException e) {
-                throw new GitException(e);
-            }
+            execution.execute(command, invocations);
         }
 
-        private static final long serialVersionUID = 1L;
+        /**
+         * Create a command with the factory method of a client, replay the recorded calls on it and execute it.
+         *
+         * @param git client which creates the command
+         * @param command type of the command
+         * @param invocations calls recorded on the command
+         * @throws GitException if the command fails
+         * @throws InterruptedException if interrupted
+         * @throws InvocationTargetException if a recorded call fails
+         * @throws IllegalAccessException if a recorded call cannot be replayed
+         */
+        static void replay(GitClient git, Class<? extends GitCommand> command, List<Invocation> invocations)
+                throws GitException, InterruptedException, InvocationTargetException, IllegalAccessException {
+            GitCommand cmd = createCommand(git, command);
+            for (Invocation inv : invocations) {
+                inv.replay(cmd);
+            }
+            cmd.execute();
+        }
 
-        private class GitCommandMasterToSlaveCallable
-                extends jenkins.security.MasterToSlaveCallable<Void, GitException> {
-            @Override
-            public Void call() throws GitException {
-                try {
-                    GitCommand cmd = createCommand();
-                    for (Invocation inv : invocations) {
-                        inv.replay(cmd);
-                    }
-                    cmd.execute();
-                    return null;
-                } catch (InvocationTargetException | IllegalAccessException | InterruptedException e) {
-                    throw new GitException(e);
+        private static GitCommand createCommand(GitClient git, Class<? extends GitCommand> command)
+                throws InvocationTargetException, IllegalAccessException {
+            for (Method m : GitClient.class.getMethods()) {
+                if (m.getReturnType() == command && m.getParameterTypes().length == 0) {
+                    return command.cast(m.invoke(git));
                 }
             }
+            throw new IllegalStateException("Can't find the factory method for " + command);
+        }
+    }
 
-            private GitCommand createCommand() throws InvocationTargetException, IllegalAccessException {
-                for (Method m : GitClient.class.getMethods()) {
-                    if (m.getReturnType() == command && m.getParameterTypes().length == 0) {
-                        return command.cast(m.invoke(proxy));
-                    }
-                }
-                throw new IllegalStateException("Can't find the factory method for " + command);
+    private static class GitCommandMasterToSlaveCallable
+            extends jenkins.security.MasterToSlaveCallable<Void, GitException> {
+        private final GitClient proxy;
+        private final Class<? extends GitCommand> command;
+        private final List<Invocation> invocations;
+
+        GitCommandMasterToSlaveCallable(
+                GitClient proxy, Class<? extends GitCommand> command, List<Invocation> invocations) {
+            this.proxy = proxy;
+            this.command = command;
+            this.invocations = invocations;
+        }
+
+        @Override
+        public Void call() throws GitException {
+            try {
+                CommandInvocationHandler.replay(proxy, command, invocations);
+                return null;
+            } catch (InvocationTargetException | IllegalAccessException | InterruptedException e) {
+                throw new GitException(e);
             }
         }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * batch.
+     *
+     * @return a {@link org.jenkinsci.plugins.gitclient.BatchCommand} object which executes its calls with a single
+     *     call over the agent channel.
+     */
+    @Override
+    public BatchCommand batch() {
+        return new GitClientBatch(proxy, channel);
     }
 
     private OutputStream wrap(OutputStream os) {
@@ -1062,4 +1121,10 @@ class RemoteGitImpl implements GitClient, hudson.plugins.git.IGitAPI, Serializab
     public boolean maintenance(String task) {
         return false;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        proxy.close();
+    }
 }
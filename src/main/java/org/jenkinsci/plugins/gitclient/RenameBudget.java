@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.gitclient;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * Limits the rename detection of changelogs, so that a commit which moves thousands of files does not dominate the
+ * time and memory of a changelog. Commits over the limits are reported with their added and deleted files instead of
+ * renames. Only the time limit applies by default.
+ */
+final class RenameBudget {
+
+    /**
+     * Constant which sets the largest number of added or deleted files for which renames are detected.
+     *
+     * <code>RENAME_LIMIT=Integer.getInteger(RenameBudget.class.getName() + ".renameLimit")</code>.
+     *
+     * Inexact rename detection compares every deleted file with every
+     * added file, so it costs the square of this limit. Commits with more
+     * added or deleted files only report exact renames. The limit is
+     * passed to command line git as '-l' and to JGit as its rename limit.
+     * When it is not set, the diff.renameLimit of the repository or the
+     * default of git and JGit applies.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.RenameBudget.renameLimit=400'
+     * to detect renames only in smaller commits.
+     */
+    @CheckForNull
+    static final Integer RENAME_LIMIT = Integer.getInteger(RenameBudget.class.getName() + ".renameLimit");
+
+    /**
+     * Constant which sets the time in milliseconds JGit may spend detecting the renames of a single commit.
+     *
+     * <code>TIMEOUT_MILLIS=Long.getLong(RenameBudget.class.getName() + ".timeoutMillis", 0)</code>.
+     *
+     * When set and rename detection takes longer, the commit is reported
+     * with its added and deleted files. The result then depends on the
+     * speed of the machine, so there is no time limit by default. Command
+     * line git has no equivalent limit.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.RenameBudget.timeoutMillis=10000'
+     * to stop rename detection of a commit after 10 seconds.
+     */
+    static final long TIMEOUT_MILLIS = Long.getLong(RenameBudget.class.getName() + ".timeoutMillis", 0L);
+
+    private static final LongAdder LIMITED_COMMITS = new LongAdder();
+
+    private RenameBudget() {}
+
+    /**
+     * @return progress monitor which cancels rename detection after {@link #TIMEOUT_MILLIS}, null if rename
+     *     detection has no time limit
+     */
+    @CheckForNull
+    static ProgressMonitor deadline() {
+        if (TIMEOUT_MILLIS <= 0) {
+            return null;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        return new EmptyProgressMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return System.nanoTime() - deadline > 0;
+            }
+        };
+    }
+
+    /**
+     * Counts a commit whose renames were not fully detected because it exceeded the rename limit or the time limit.
+     */
+    static void limitReached() {
+        LIMITED_COMMITS.increment();
+    }
+
+    /**
+     * @return number of commits whose renames were not fully detected
+     */
+    static long getLimitedCommits() {
+        return LIMITED_COMMITS.sum();
+    }
+}
@@ -61,6 +61,21 @@ public interface RevListCommand extends GitCommand {
      */
     RevListCommand to(List<ObjectId> revs);
 
+    /**
+     * to.
+     *
+     * Commits are appended to a packed array instead of a list, which needs
+     * much less memory for the hundreds of thousands of commits a rev-list
+     * can report.
+     *
+     * @param revs a {@link org.jenkinsci.plugins.gitclient.ObjectIdArray} object.
+     * @return a {@link org.jenkinsci.plugins.gitclient.RevListCommand} object.
+     * @since 4.7.0
+     */
+    default RevListCommand to(ObjectIdArray revs) {
+        return to(revs.asList());
+    }
+
     /**
      * reference.
      *
@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Peeled tags of a repository and the descriptions computed from them, kept between calls of
+ * {@link JGitAPIImpl#describe(String)}.
+ * <p>
+ * Each update lists the tag references, which is cheap, and only peels the tags which were added or moved since the
+ * previous update. The description of a commit only depends on the history, which never changes, and on the tags,
+ * so descriptions are kept until a tag is added, moved or deleted.
+ * <p>
+ * This is a memo of the descriptions per commit, not a reachability index. Describing a commit which was not
+ * described since the tags last changed still walks its history, as describe did before.
+ */
+final class TagIndex {
+
+    /* Repositories whose index is kept, the least recently used index is dropped */
+    private static final int MAX_REPOSITORIES = 100;
+
+    /* Descriptions kept per repository, all are dropped when there are more */
+    private static final int MAX_DESCRIPTIONS = 10000;
+
+    private static final Map<File, TagIndex> INDEXES = new LinkedHashMap<File, TagIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, TagIndex> eldest) {
+            return size() > MAX_REPOSITORIES;
+        }
+    };
+
+    private Map<String, Ref> tagRefs = Collections.emptyMap();
+    private Map<ObjectId, Ref> peeledTags = Collections.emptyMap();
+    private final Map<ObjectId, String> descriptions = new HashMap<>();
+
+    /**
+     * @param repo repository
+     * @return index of the repository, a new index if the repository has no git directory
+     */
+    static TagIndex forRepository(Repository repo) {
+        File gitDir = repo.getDirectory();
+        if (gitDir == null) {
+            return new TagIndex();
+        }
+        synchronized (INDEXES) {
+            return INDEXES.computeIfAbsent(gitDir.getAbsoluteFile(), k -> new TagIndex());
+        }
+    }
+
+    /**
+     * Bring the index up to date with the tags of the repository.
+     *
+     * @param repo repository of this index
+     * @return unmodifiable map from the commit of each tag to the tag
+     * @throws IOException on failure to read the tags
+     */
+    synchronized Map<ObjectId, Ref> update(Repository repo) throws IOException {
+        RefDatabase refDatabase = repo.getRefDatabase();
+        List<Ref> refs = refDatabase.getRefsByPrefix(R_TAGS);
+        boolean changed = refs.size() != tagRefs.size();
+        Map<String, Ref> updated = new HashMap<>();
+        for (Ref ref : refs) {
+            Ref known = tagRefs.get(ref.getName());
+            if (known != null && AnyObjectId.isEqual(known.getObjectId(), ref.getObjectId())) {
+                updated.put(ref.getName(), known);
+            } else {
+                changed = true;
+                updated.put(ref.getName(), refDatabase.peel(ref));
+            }
+        }
+        if (changed) {
+            Map<ObjectId, Ref> peeled = new HashMap<>();
+            for (Ref ref : updated.values()) {
+                ObjectId key = ref.getPeeledObjectId();
+                if (key == null) {
+                    key = ref.getObjectId();
+                }
+                peeled.put(key, ref);
+            }
+            tagRefs = updated;
+            peeledTags = Collections.unmodifiableMap(peeled);
+            descriptions.clear();
+        }
+        return peeledTags;
+    }
+
+    /**
+     * @param tip commit
+     * @return description of the commit without its abbreviated object name, null if it is not known
+     */
+    @CheckForNull
+    synchronized String description(ObjectId tip) {
+        return descriptions.get(tip);
+    }
+
+    /**
+     * Remember the description of a commit.
+     *
+     * @param tags tags returned by the {@link #update(Repository)} the description is computed from
+     * @param tip commit
+     * @param description description of the commit without its abbreviated object name
+     */
+    synchronized void remember(Map<ObjectId, Ref> tags, ObjectId tip, String description) {
+        if (tags != peeledTags) {
+            return; // Tags changed while the description was computed
+        }
+        if (descriptions.size() >= MAX_DESCRIPTIONS) {
+            descriptions.clear();
+        }
+        descriptions.put(tip.copy(), description);
+    }
+}
@@ -0,0 +1,333 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Long-lived {@code git cat-file --batch-check} or {@code git cat-file --batch}
+ * process which answers object lookups over a pipe instead of forking a new
+ * git process for every lookup.
+ * <p>
+ * The process is started on first use and stopped after it has been idle for
+ * the configured timeout, or when {@link #close()} is called. It is restarted
+ * transparently by the next lookup. A lookup which is not answered within the
+ * read timeout stops the process. Any failure of the process is reported as
+ * an {@link IOException}, including what git wrote to its standard error, so
+ * that callers can fall back to a regular git command.
+ */
+public class CatFileBatch implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(CatFileBatch.class.getName());
+
+    /* Most of what git writes to standard error is a single "fatal:" line */
+    private static final int MAX_ERROR_LENGTH = 4096;
+
+    private static final ScheduledExecutorService IDLE_REAPER = createExecutor("idle");
+
+    /* Separate from the reaper, which may wait for the lock held by the lookup that has to be stopped */
+    private static final ScheduledExecutorService READ_WATCHDOG = createExecutor("watchdog");
+
+    private static ScheduledExecutorService createExecutor(String name) {
+        ThreadFactory threadFactory =
+                new NamingThreadFactory(new DaemonThreadFactory(), CatFileBatch.class.getSimpleName() + " " + name);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Type, size and optionally the content of an object reported by cat-file.
+     */
+    public static final class ObjectInfo {
+        private final ObjectId id;
+        private final String type;
+        private final long size;
+        private final byte[] content;
+
+        ObjectInfo(ObjectId id, String type, long size, byte[] content) {
+            this.id = id;
+            this.type = type;
+            this.size = size;
+            this.content = content;
+        }
+
+        @NonNull
+        public ObjectId getId() {
+            return id;
+        }
+
+        /**
+         * @return object type, one of "commit", "tree", "blob" or "tag"
+         */
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return raw object content, or null if this lookup did not request content
+         */
+        @CheckForNull
+        public byte[] getContent() {
+            return content == null ? null : content.clone();
+        }
+    }
+
+    private final List<String> command;
+    private final File workDir;
+    private final Map<String, String> environment;
+    private final boolean withContent;
+    private final long idleTimeoutMillis;
+    private final long readTimeoutMillis;
+
+    private Process process;
+    private OutputStream stdin;
+    private InputStream stdout;
+    private File stderr;
+    private long lastUsed;
+    private ScheduledFuture<?> idleCheck;
+
+    /**
+     * Constructor for CatFileBatch.
+     *
+     * @param gitCommand git executable followed by any arguments to place before "cat-file"
+     * @param workDir working directory of the git process
+     * @param environment environment variables added to those of the current process
+     * @param withContent true to run {@code --batch} and read object content, false to run {@code --batch-check}
+     * @param idleTimeoutMillis milliseconds without a lookup after which the process is stopped
+     * @param readTimeoutMillis milliseconds to wait for the answer to a lookup before the process is stopped
+     */
+    public CatFileBatch(
+            @NonNull List<String> gitCommand,
+            @NonNull File workDir,
+            @NonNull Map<String, String> environment,
+            boolean withContent,
+            long idleTimeoutMillis,
+            long readTimeoutMillis) {
+        this.command = new ArrayList<>(gitCommand);
+        this.command.add("cat-file");
+        this.command.add(withContent ? "--batch" : "--batch-check");
+        this.workDir = workDir;
+        this.environment = environment;
+        this.withContent = withContent;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Look up an object by any name accepted by {@code git rev-parse}.
+     *
+     * @param objectName object name, for example a SHA1, a ref name or {@code HEAD^{commit}}
+     * @return description of the object, or null if git reports the object as missing or ambiguous
+     * @throws IOException if the cat-file process cannot be used, callers should fall back to a regular command
+     */
+    @CheckForNull
+    public synchronized ObjectInfo lookup(@NonNull String objectName) throws IOException {
+        if (objectName.isEmpty() || objectName.chars().anyMatch(Character::isWhitespace)) {
+            throw new IOException("Object name not supported by cat-file batch: '" + objectName + "'");
+        }
+        ensureStarted();
+        lastUsed = System.currentTimeMillis();
+        // A wedged process is killed, which ends the blocked read below
+        ScheduledFuture<?> watchdog =
+                READ_WATCHDOG.schedule(process::destroyForcibly, readTimeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            stdin.write((objectName + "\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+            String header = readLine();
+            String[] fields = header.split(" ");
+            if (fields.length != 3) {
+                // "<name> missing" or "<name> ambiguous"
+                return null;
+            }
+            if (fields[0].length() != 40) {
+                throw new IOException("Unsupported object id format in cat-file output '" + header + "'");
+            }
+            long size = Long.parseLong(fields[2]);
+            byte[] content = null;
+            if (withContent) {
+                content = readContent(size);
+            }
+            return new ObjectInfo(ObjectId.fromString(fields[0]), fields[1], size, content);
+        } catch (IOException | RuntimeException e) {
+            boolean timedOut = !watchdog.cancel(false);
+            // Protocol is out of sync or the process died, start over on next lookup
+            String errors = stop();
+            String message = timedOut
+                    ? "cat-file did not answer within " + readTimeoutMillis + " ms"
+                    : "cat-file lookup of '" + objectName + "' failed";
+            if (!errors.isEmpty()) {
+                message += ": " + errors;
+            }
+            throw new IOException(message, e);
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    /**
+     * Stop the cat-file process if it is running. A later lookup starts a new process.
+     */
+    @Override
+    public synchronized void close() {
+        stop();
+    }
+
+    /**
+     * Stop the cat-file process if it is running.
+     *
+     * @return what the process wrote to standard error, empty if it wrote nothing or was not running
+     */
+    private String stop() {
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+            idleCheck = null;
+        }
+        if (process == null) {
+            return "";
+        }
+        try {
+            // cat-file exits when its standard input is closed
+            stdin.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close cat-file input", e);
+        }
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                stdout.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close cat-file output", e);
+            }
+            process = null;
+            stdin = null;
+            stdout = null;
+        }
+        String errors = readErrors();
+        try {
+            Files.deleteIfExists(stderr.toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to delete cat-file error output " + stderr, e);
+        }
+        stderr = null;
+        return errors;
+    }
+
+    private String readErrors() {
+        try (RandomAccessFile file = new RandomAccessFile(stderr, "r")) {
+            long length = file.length();
+            byte[] tail = new byte[(int) Math.min(length, MAX_ERROR_LENGTH)];
+            file.seek(length - tail.length);
+            file.readFully(tail);
+            return new String(tail, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to read cat-file error output " + stderr, e);
+            return "";
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (process != null && process.isAlive()) {
+            return;
+        }
+        stop();
+        stderr = File.createTempFile("cat-file", ".err");
+        ProcessBuilder pb = new ProcessBuilder(command).directory(workDir).redirectError(stderr);
+        pb.environment().putAll(environment);
+        LOGGER.log(Level.FINE, "Starting {0} in {1}", new Object[] {command, workDir});
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            Files.deleteIfExists(stderr.toPath());
+            stderr = null;
+            throw e;
+        }
+        stdin = new BufferedOutputStream(process.getOutputStream());
+        stdout = new BufferedInputStream(process.getInputStream());
+        scheduleIdleCheck(idleTimeoutMillis);
+    }
+
+    private void scheduleIdleCheck(long delayMillis) {
+        idleCheck = IDLE_REAPER.schedule(this::closeIfIdle, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void closeIfIdle() {
+        if (process == null) {
+            return;
+        }
+        long idle = System.currentTimeMillis() - lastUsed;
+        if (idle >= idleTimeoutMillis) {
+            LOGGER.log(Level.FINE, "Stopping idle {0} in {1}", new Object[] {command, workDir});
+            close();
+        } else {
+            scheduleIdleCheck(idleTimeoutMillis - idle);
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = stdout.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("cat-file process ended unexpectedly");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private byte[] readContent(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object too large for cat-file batch lookup: " + size);
+        }
+        byte[] content = new byte[(int) size];
+        int offset = 0;
+        while (offset < content.length) {
+            int count = stdout.read(content, offset, content.length - offset);
+            if (count < 0) {
+                throw new EOFException("cat-file process ended unexpectedly");
+            }
+            offset += count;
+        }
+        // Content is followed by a newline
+        if (stdout.read() != '\n') {
+            throw new IOException("Unexpected cat-file output after object content");
+        }
+        return content;
+    }
+}
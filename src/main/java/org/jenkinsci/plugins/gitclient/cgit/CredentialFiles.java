@@ -0,0 +1,303 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Credential files of command line git, the private keys, passphrases, user names, passwords and askpass scripts,
+ * which are written once per client and reused by its later commands, including parallel submodule updates.
+ * <p>
+ * A file is keyed by its name, the id of its credential and a hash of its content, so a changed secret gets a new
+ * file. The files are written in a private directory. Each command which got a file releases it when it has finished.
+ * A file is overwritten with zeros and deleted once no command has used it for the idle time, when the instance is
+ * closed and no command uses it any more, or when the JVM shuts down.
+ */
+public final class CredentialFiles implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(CredentialFiles.class.getName());
+
+    /* Wipes the files which were not used for the idle time */
+    private static final ScheduledExecutorService EXPIRY = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), CredentialFiles.class.getSimpleName()));
+
+    /* Directories of every instance, wiped at JVM shutdown */
+    private static final Set<Path> DIRECTORIES = new HashSet<>();
+
+    private static boolean shutdownHookAdded;
+
+    /**
+     * Creates the private directory of the files.
+     */
+    @FunctionalInterface
+    public interface Directory {
+        /**
+         * @return new directory which only the current user can access
+         * @throws IOException if the directory cannot be created
+         */
+        @NonNull
+        Path create() throws IOException;
+    }
+
+    /**
+     * Writes a credential file.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * @param dir directory to write the file in, null to write it with the temporary files of the command
+         * @return the written file
+         * @throws IOException if the file cannot be written
+         */
+        @NonNull
+        Path write(@CheckForNull Path dir) throws IOException;
+    }
+
+    private static final class Entry {
+        final Path file;
+        /* Number of commands which got the file and did not release it yet */
+        int uses;
+        long releasedNanos;
+        /* The instance was closed while the file was used, it is wiped when it is released */
+        boolean closed;
+
+        Entry(Path file) {
+            this.file = file;
+        }
+    }
+
+    private final Directory directory;
+    private final long idleNanos;
+    /* Files which are handed out again */
+    private final Map<String, Entry> files = new HashMap<>();
+    /* Every file which is not wiped yet, including those of closed instances which are still used */
+    private final Map<Path, Entry> written = new HashMap<>();
+    private Path dir;
+
+    /**
+     * @param directory creates the private directory when the first file is written
+     * @param idleMillis milliseconds a file is kept after the last command which used it released it
+     */
+    public CredentialFiles(@NonNull Directory directory, long idleMillis) {
+        this.directory = directory;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    /**
+     * @param name name of the file within its credential, for example "key" or "askpass"
+     * @param credentialsId id of the credential, may be null
+     * @param content what the file contains, or what determines its content
+     * @param writer writes the file if it has not been written before
+     * @return the file, shared with the other commands which ask for the same content, to be released with
+     *     {@link #release(Path)} when the command has finished
+     * @throws IOException if the file cannot be written
+     */
+    @NonNull
+    public synchronized Path get(
+            @NonNull String name, @CheckForNull String credentialsId, @NonNull List<String> content, Writer writer)
+            throws IOException {
+        String key = name + '\0' + credentialsId + '\0' + contentHash(content);
+        Entry entry = files.get(key);
+        if (entry == null || !Files.exists(entry.file)) {
+            if (dir == null) {
+                dir = directory.create();
+                addDirectory(dir);
+            }
+            entry = new Entry(writer.write(dir));
+            files.put(key, entry);
+            written.put(entry.file, entry);
+        }
+        entry.uses++;
+        return entry.file;
+    }
+
+    /**
+     * Release a file returned by {@link #get(String, String, List, Writer)}.
+     *
+     * @param file file which the command no longer uses
+     */
+    public void release(@NonNull Path file) {
+        List<Path> wiped = new ArrayList<>();
+        Path wipedDir;
+        synchronized (this) {
+            Entry entry = written.get(file);
+            if (entry == null || entry.uses == 0) {
+                return;
+            }
+            entry.uses--;
+            if (entry.uses > 0) {
+                return;
+            }
+            if (entry.closed) {
+                written.remove(file);
+                wiped.add(file);
+            } else {
+                entry.releasedNanos = System.nanoTime();
+                EXPIRY.schedule(this::expire, idleNanos, TimeUnit.NANOSECONDS);
+            }
+            wipedDir = emptyDirectory();
+        }
+        wipe(wiped, wipedDir);
+    }
+
+    /**
+     * Wipes and deletes the files which no command uses, the other files are wiped when they are released. Files are
+     * written again if {@link #get(String, String, List, Writer)} is called after the instance has been closed.
+     */
+    @Override
+    public void close() {
+        List<Path> wiped = new ArrayList<>();
+        Path wipedDir;
+        synchronized (this) {
+            files.clear();
+            for (Iterator<Entry> it = written.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.uses == 0) {
+                    it.remove();
+                    wiped.add(entry.file);
+                } else {
+                    entry.closed = true;
+                }
+            }
+            wipedDir = emptyDirectory();
+        }
+        wipe(wiped, wipedDir);
+    }
+
+    private void expire() {
+        List<Path> wiped = new ArrayList<>();
+        Path wipedDir;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<Entry> it = written.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.uses == 0 && now - entry.releasedNanos >= idleNanos) {
+                    it.remove();
+                    files.values().remove(entry);
+                    wiped.add(entry.file);
+                }
+            }
+            wipedDir = emptyDirectory();
+        }
+        wipe(wiped, wipedDir);
+    }
+
+    /* Forget the directory once it holds no files, it is deleted by the caller */
+    @CheckForNull
+    private Path emptyDirectory() {
+        if (!written.isEmpty() || dir == null) {
+            return null;
+        }
+        Path empty = dir;
+        dir = null;
+        return empty;
+    }
+
+    private static void wipe(List<Path> files, @CheckForNull Path dir) {
+        for (Path file : files) {
+            wipe(file);
+        }
+        if (dir != null) {
+            deleteQuietly(dir);
+            synchronized (DIRECTORIES) {
+                DIRECTORIES.remove(dir);
+            }
+        }
+    }
+
+    private static void addDirectory(Path dir) {
+        synchronized (DIRECTORIES) {
+            DIRECTORIES.add(dir);
+            if (!shutdownHookAdded) {
+                Runtime.getRuntime()
+                        .addShutdownHook(
+                                new Thread(CredentialFiles::wipeDirectories, CredentialFiles.class.getSimpleName()));
+                shutdownHookAdded = true;
+            }
+        }
+    }
+
+    private static void wipeDirectories() {
+        List<Path> dirs;
+        synchronized (DIRECTORIES) {
+            dirs = new ArrayList<>(DIRECTORIES);
+            DIRECTORIES.clear();
+        }
+        for (Path dir : dirs) {
+            File[] children = dir.toFile().listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    wipe(child.toPath());
+                }
+            }
+            deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * Overwrite a file with zeros and delete it.
+     *
+     * @param file file to wipe
+     */
+    static void wipe(Path file) {
+        File f = file.toFile();
+        long length = f.length();
+        // Key files are read only, the owner may still make them writable
+        if (length > 0 && (f.canWrite() || f.setWritable(true, true))) {
+            byte[] zeros = new byte[(int) Math.min(length, 8192)];
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.WRITE)) {
+                for (long written = 0; written < length; written += zeros.length) {
+                    out.write(zeros, 0, (int) Math.min(zeros.length, length - written));
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to overwrite credential file " + file, e);
+            }
+        }
+        deleteQuietly(file);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Credential file " + path + " not deleted", e);
+        }
+    }
+
+    static String contentHash(List<String> content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String s : content) {
+                digest.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return Util.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
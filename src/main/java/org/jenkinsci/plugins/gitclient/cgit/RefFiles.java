@@ -0,0 +1,249 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Reads the references of a repository directly from its {@code packed-refs} file and its loose reference files,
+ * instead of forking {@code git show-ref} or {@code git for-each-ref}.
+ * <p>
+ * Only the plain "files" reference backend with SHA-1 object names is supported. {@link #forWorkTree(File)} returns
+ * null for repositories which use reftable, another object format or a linked worktree, and callers then fall back
+ * to a git command. Loose references are read before {@code packed-refs}, so a reference which is concurrently
+ * moved into {@code packed-refs} by {@code git pack-refs} is still found.
+ */
+public final class RefFiles {
+
+    /**
+     * A reference read from the repository.
+     */
+    public static final class Entry {
+        private final ObjectId objectId;
+        private final ObjectId peeledObjectId;
+        private final boolean peeled;
+        private final String target;
+
+        Entry(ObjectId objectId, ObjectId peeledObjectId, boolean peeled, String target) {
+            this.objectId = objectId;
+            this.peeledObjectId = peeledObjectId;
+            this.peeled = peeled;
+            this.target = target;
+        }
+
+        /**
+         * @return object the reference points to, null for a symbolic reference
+         */
+        @CheckForNull
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * @return object an annotated tag points to, null if the object is not an annotated tag or if it is not known
+         *     whether it is one, see {@link #isPeeled()}
+         */
+        @CheckForNull
+        public ObjectId getPeeledObjectId() {
+            return peeledObjectId;
+        }
+
+        /**
+         * @return true if {@code packed-refs} records whether the object is an annotated tag, false if the object
+         *     must be read to find out
+         */
+        public boolean isPeeled() {
+            return peeled;
+        }
+
+        /**
+         * @return name of the reference a symbolic reference points to, null for other references
+         */
+        @CheckForNull
+        public String getTarget() {
+            return target;
+        }
+    }
+
+    private static final String PACKED_REFS_HEADER = "# pack-refs with:";
+    private static final String SYMREF_PREFIX = "ref: ";
+
+    private final File gitDir;
+
+    private RefFiles(File gitDir) {
+        this.gitDir = gitDir;
+    }
+
+    /**
+     * @param workTree working tree of a repository, with a {@code .git} directory or a {@code .git} file pointing to
+     *     the git directory
+     * @return reader for the references of the repository, null if the references must be read with a git command
+     */
+    @CheckForNull
+    public static RefFiles forWorkTree(@NonNull File workTree) {
+        File gitDir = new File(workTree, Constants.DOT_GIT);
+        try {
+            if (gitDir.isFile()) {
+                String content = readFile(gitDir).trim();
+                if (!content.startsWith("gitdir: ")) {
+                    return null;
+                }
+                File linked = new File(content.substring("gitdir: ".length()));
+                gitDir = linked.isAbsolute() ? linked : new File(workTree, linked.getPath());
+            }
+            if (!gitDir.isDirectory()
+                    || new File(gitDir, "commondir").exists()
+                    || new File(gitDir, "reftable").exists()
+                    || !new File(gitDir, Constants.R_REFS).isDirectory()) {
+                return null;
+            }
+            File config = new File(gitDir, Constants.CONFIG);
+            if (config.isFile()) {
+                String text = readFile(config).toLowerCase(Locale.ROOT);
+                if (text.contains("refstorage") || text.contains("objectformat")) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new RefFiles(gitDir);
+    }
+
+    /**
+     * Read the references whose names start with a prefix.
+     *
+     * @param prefix prefix of the reference names, for example "refs/tags/"
+     * @return references by name
+     * @throws IOException if the references cannot be read, callers should fall back to a git command
+     */
+    @NonNull
+    public Map<String, Entry> read(@NonNull String prefix) throws IOException {
+        Map<String, Entry> refs = new HashMap<>();
+        try {
+            readLooseRefs(prefix, refs);
+            readPackedRefs(prefix, refs);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid object name in references of " + gitDir, e);
+        }
+        return refs;
+    }
+
+    private void readLooseRefs(String prefix, Map<String, Entry> refs) throws IOException {
+        // Start at the deepest directory which contains every reference with the prefix
+        String dirName = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        File dir = new File(gitDir, dirName);
+        if (!dirName.startsWith(Constants.R_REFS) || !dir.isDirectory()) {
+            return;
+        }
+        Deque<File> dirs = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        dirs.push(dir);
+        names.push(dirName);
+        while (!dirs.isEmpty()) {
+            File current = dirs.pop();
+            String currentName = names.pop();
+            File[] children = current.listFiles();
+            if (children == null) {
+                continue; // Removed while references are read
+            }
+            for (File child : children) {
+                String name = currentName + child.getName();
+                if (child.isDirectory()) {
+                    dirs.push(child);
+                    names.push(name + "/");
+                } else if (name.startsWith(prefix) && !name.endsWith(".lock")) {
+                    Entry entry = readLooseRef(child);
+                    if (entry != null) {
+                        refs.put(name, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    @CheckForNull
+    private static Entry readLooseRef(File file) throws IOException {
+        String content;
+        try {
+            content = readFile(file).trim();
+        } catch (NoSuchFileException e) {
+            return null; // Deleted or packed while references are read
+        }
+        if (content.startsWith(SYMREF_PREFIX)) {
+            return new Entry(null, null, false, content.substring(SYMREF_PREFIX.length()));
+        }
+        if (!ObjectId.isId(content)) {
+            return null; // Not a reference, git ignores it as well
+        }
+        return new Entry(ObjectId.fromString(content), null, false, null);
+    }
+
+    private void readPackedRefs(String prefix, Map<String, Entry> refs) throws IOException {
+        byte[] packed;
+        try {
+            packed = Files.readAllBytes(new File(gitDir, Constants.PACKED_REFS).toPath());
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        boolean peeledTags = false;
+        boolean fullyPeeled = false;
+        String lastName = null;
+        ObjectId lastId = null;
+        int pos = 0;
+        while (pos < packed.length) {
+            int eol = pos;
+            while (eol < packed.length && packed[eol] != '\n') {
+                eol++;
+            }
+            int end = eol > pos && packed[eol - 1] == '\r' ? eol - 1 : eol;
+            if (end == pos) {
+                // Empty line
+            } else if (packed[pos] == '#') {
+                String header = new String(packed, pos, end - pos, StandardCharsets.UTF_8);
+                if (header.startsWith(PACKED_REFS_HEADER)) {
+                    String traits = " " + header.substring(PACKED_REFS_HEADER.length()) + " ";
+                    peeledTags = traits.contains(" peeled ");
+                    fullyPeeled = traits.contains(" fully-peeled ");
+                }
+            } else if (packed[pos] == '^') {
+                if (end - pos != Constants.OBJECT_ID_STRING_LENGTH + 1) {
+                    throw new IOException("Unexpected peeled line in packed-refs of " + gitDir);
+                }
+                if (lastName != null) {
+                    refs.put(lastName, new Entry(lastId, ObjectId.fromString(packed, pos + 1), true, null));
+                }
+                lastName = null;
+            } else if (end - pos > Constants.OBJECT_ID_STRING_LENGTH + 1
+                    && packed[pos + Constants.OBJECT_ID_STRING_LENGTH] == ' ') {
+                int nameStart = pos + Constants.OBJECT_ID_STRING_LENGTH + 1;
+                String name = new String(packed, nameStart, end - nameStart, StandardCharsets.UTF_8);
+                lastName = null;
+                if (name.startsWith(prefix) && !refs.containsKey(name)) {
+                    lastName = name;
+                    lastId = ObjectId.fromString(packed, pos);
+                    boolean peeled = fullyPeeled || (peeledTags && name.startsWith(Constants.R_TAGS));
+                    refs.put(name, new Entry(lastId, null, peeled, null));
+                }
+            } else {
+                throw new IOException("Unexpected line in packed-refs of " + gitDir);
+            }
+            pos = eol + 1;
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
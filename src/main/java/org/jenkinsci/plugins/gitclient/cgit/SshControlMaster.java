@@ -0,0 +1,189 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * OpenSSH connection multiplexing for the ssh commands started by command line git.
+ * <p>
+ * Each (user, host, port, credential) of an instance gets its own {@code ControlPath} socket. The first ssh command
+ * for a connection starts a master which stays in the background for the configured persist time, later commands of
+ * the same client, including parallel submodule updates, reuse its connection instead of repeating the key exchange
+ * and authentication. A master exits by itself once it was idle for the persist time.
+ * <p>
+ * The sockets of all instances are kept in one private directory per JVM. Clients are usually not closed, so the
+ * masters still running are stopped and the directory is deleted when the JVM shuts down. {@link #close()} stops the
+ * masters of an instance earlier.
+ */
+public final class SshControlMaster implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(SshControlMaster.class.getName());
+
+    /* Unix domain socket paths are limited to 104 bytes on macOS and 108 bytes on Linux */
+    private static final int MAX_SOCKET_PATH = 100;
+
+    private static final int SOCKET_NAME_LENGTH = 16;
+
+    /* Directory of the sockets of every instance, created by the first instance which shares a connection */
+    private static Path socketDir;
+
+    private final int persistSeconds;
+    /* Sockets of different instances differ even for the same connection, instances may use different credentials */
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Set<Path> sockets = new LinkedHashSet<>();
+
+    /**
+     * @param persistSeconds seconds a master stays running after its last command
+     */
+    public SshControlMaster(int persistSeconds) {
+        this.persistSeconds = persistSeconds;
+    }
+
+    /**
+     * @param user user name of the connection
+     * @param host host of the connection
+     * @param port port of the connection, -1 for the default port
+     * @param credentialsId id of the credentials used for the connection, may be null
+     * @return ssh options which share the connection, null if connections cannot be shared
+     */
+    @CheckForNull
+    public synchronized String options(@NonNull String user, @NonNull String host, int port, String credentialsId) {
+        Path socket;
+        try {
+            socket = socketDir()
+                    .resolve(socketName(instanceId + '\0' + user + '@' + host + ':' + port + '\0' + credentialsId));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to create ssh control socket directory, connections are not shared", e);
+            return null;
+        }
+        if (socket.toString().getBytes(StandardCharsets.UTF_8).length > MAX_SOCKET_PATH) {
+            LOGGER.log(Level.FINE, "Path of ssh control socket {0} is too long, connections are not shared", socket);
+            return null;
+        }
+        sockets.add(socket);
+        return "-o ControlMaster=auto -o \"ControlPath=" + socket + "\" -o ControlPersist=" + persistSeconds;
+    }
+
+    /**
+     * Stops the masters started through this instance and deletes their sockets. Connections are shared again if
+     * {@link #options(String, String, int, String)} is called after the instance has been closed.
+     */
+    @Override
+    public void close() {
+        List<Path> stopped;
+        synchronized (this) {
+            stopped = new ArrayList<>(sockets);
+            sockets.clear();
+        }
+        for (Path socket : stopped) {
+            if (Files.exists(socket)) {
+                exit(socket);
+            }
+            deleteQuietly(socket);
+        }
+    }
+
+    /**
+     * @return directory of the sockets of every instance, deleted with the masters still running at JVM shutdown
+     */
+    private static synchronized Path socketDir() throws IOException {
+        if (socketDir == null) {
+            Path dir = createSocketDir();
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(() -> shutdown(dir), SshControlMaster.class.getSimpleName()));
+            socketDir = dir;
+        }
+        return socketDir;
+    }
+
+    private static void shutdown(Path dir) {
+        File[] children = dir.toFile().listFiles();
+        if (children != null) {
+            for (File child : children) {
+                exit(child.toPath());
+            }
+        }
+        deleteSocketDir(dir);
+    }
+
+    private static void exit(Path socket) {
+        // The host is required by the command line but not used, ControlPath names the master
+        ProcessBuilder pb = new ProcessBuilder("ssh", "-o", "ControlPath=" + socket, "-O", "exit", "localhost")
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process process = pb.start();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to stop ssh control master " + socket, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressFBWarnings(
+            value = "DMI_HARDCODED_ABSOLUTE_FILENAME",
+            justification = "Short socket paths need a directory near the root, /tmp is the usual one")
+    private static Path createSocketDir() throws IOException {
+        // java.io.tmpdir is often too deep for a socket path, prefer /tmp when it exists
+        Path tmp = Paths.get("/tmp");
+        if (!Files.isDirectory(tmp) || !Files.isWritable(tmp)) {
+            tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempDirectory(
+                    tmp, "jgs", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+        return Files.createTempDirectory(tmp, "jgs");
+    }
+
+    private static void deleteSocketDir(Path dir) {
+        File[] children = dir.toFile().listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteQuietly(child.toPath());
+            }
+        }
+        deleteQuietly(dir);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to delete " + path, e);
+        }
+    }
+
+    static String socketName(String connection) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(connection.getBytes(StandardCharsets.UTF_8));
+            return Util.toHexString(digest).substring(0, SOCKET_NAME_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.gitclient.jgit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthCache;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Connection manager shared by the {@link PreemptiveAuthHttpClientConnection}s of all JGit transports, so that
+ * sequential smart HTTP requests and fetches to the same server reuse kept-alive TCP and TLS connections.
+ * <p>
+ * Connections are pooled per route, which is the target host and the proxy, and are only handed out again to
+ * requests with the same credential, see {@link #userToken(String, String)}.
+ * <p>
+ * Basic and digest authentication which succeeded for a credential is remembered in {@link #authCache(String)}, so
+ * later requests with the credential authenticate preemptively. Their request bodies are then streamed to the server
+ * while JGit writes them, rather than buffered in memory or in a temporary file, because they are never sent twice.
+ */
+final class HttpClientConnectionPool {
+
+    /**
+     * Constant which sets the largest number of pooled connections per target host and proxy.
+     *
+     * <code>MAX_PER_ROUTE=Integer.getInteger(HttpClientConnectionPool.class.getName() + ".maxPerRoute", 20)</code>.
+     *
+     * Requests which find no free pooled connection within
+     * {@link #LEASE_TIMEOUT_MILLIS} open a connection of their own, as all
+     * requests did in earlier releases, so the limit never throttles
+     * concurrent transports.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.jgit.HttpClientConnectionPool.maxPerRoute=0'
+     * to create a new HTTP client and new connections for every request as in earlier releases.
+     */
+    static final int MAX_PER_ROUTE = Integer.getInteger(HttpClientConnectionPool.class.getName() + ".maxPerRoute", 20);
+
+    /**
+     * Constant which sets the largest number of pooled connections.
+     *
+     * <code>MAX_TOTAL=Integer.getInteger(HttpClientConnectionPool.class.getName() + ".maxTotal", 200)</code>.
+     */
+    static final int MAX_TOTAL = Integer.getInteger(HttpClientConnectionPool.class.getName() + ".maxTotal", 200);
+
+    /**
+     * Constant which sets the seconds an idle pooled connection is kept open.
+     *
+     * <code>IDLE_SECONDS=Integer.getInteger(HttpClientConnectionPool.class.getName() + ".idleSeconds", 30)</code>.
+     *
+     * Connections are also closed when the server asks for a shorter
+     * keep-alive in its Keep-Alive header.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.jgit.HttpClientConnectionPool.idleSeconds=120'
+     * to keep idle connections for two minutes.
+     */
+    static final int IDLE_SECONDS = Integer.getInteger(HttpClientConnectionPool.class.getName() + ".idleSeconds", 30);
+
+    /* Milliseconds a request waits for a free pooled connection before it opens a connection of its own */
+    static final int LEASE_TIMEOUT_MILLIS = 100;
+
+    /* Pooled connections idle for longer are checked before they are reused */
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    /**
+     * Keeps connections alive as long as the server allows, but no longer than {@link #IDLE_SECONDS}.
+     */
+    static final ConnectionKeepAliveStrategy KEEP_ALIVE = new ConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long max = TimeUnit.SECONDS.toMillis(IDLE_SECONDS);
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration < 0 || duration > max ? max : duration;
+        }
+    };
+
+    /* Bytes of a streamed request body buffered between JGit and the thread which sends the request */
+    static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /*
+     * Milliseconds the sender of a streamed request body waits for JGit to write more of the body, or to ask for the
+     * response, when JGit sets no read timeout. The request and its pooled connection are abandoned after that.
+     */
+    static final long STREAM_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /* Threads which send streamed request bodies while JGit writes them */
+    static final ExecutorService BODY_SENDERS = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), HttpClientConnectionPool.class.getSimpleName()));
+
+    private static final int MAX_AUTH_CACHES = 100;
+
+    /* Authentication schemes which succeeded per credential, so that later requests authenticate preemptively */
+    private static final Map<String, AuthCache> AUTH_CACHES = new LinkedHashMap<String, AuthCache>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AuthCache> eldest) {
+            return size() > MAX_AUTH_CACHES;
+        }
+    };
+
+    private static PoolingHttpClientConnectionManager manager;
+
+    private HttpClientConnectionPool() {}
+
+    static boolean isEnabled() {
+        return MAX_PER_ROUTE > 0 && MAX_TOTAL > 0;
+    }
+
+    /**
+     * Configure a client builder to use the shared connections.
+     *
+     * @param builder builder of a client which uses the default SSL socket factory and hostname verifier
+     */
+    static void configure(HttpClientBuilder builder) {
+        builder.setConnectionManager(getManager())
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy(KEEP_ALIVE);
+    }
+
+    /* package protected for tests */
+    static synchronized PoolingHttpClientConnectionManager getManager() {
+        if (manager == null) {
+            manager = new PoolingHttpClientConnectionManager();
+            manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+            manager.setMaxTotal(MAX_TOTAL);
+            manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+            // The evictor thread is a daemon and runs as long as the manager is used
+            new IdleConnectionEvictor(manager, IDLE_SECONDS, TimeUnit.SECONDS).start();
+        }
+        return manager;
+    }
+
+    /**
+     * @param userToken user token of a credential
+     * @return authentication schemes which succeeded with the credential
+     */
+    static synchronized AuthCache authCache(String userToken) {
+        return AUTH_CACHES.computeIfAbsent(userToken, k -> new BasicAuthCache());
+    }
+
+    /**
+     * @param userName user name of the credential, null for anonymous requests
+     * @param password password of the credential
+     * @return state of the pooled connections a request with the credential may use, null for anonymous requests
+     */
+    @CheckForNull
+    static String userToken(@CheckForNull String userName, @CheckForNull String password) {
+        if (userName == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(userName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return Util.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
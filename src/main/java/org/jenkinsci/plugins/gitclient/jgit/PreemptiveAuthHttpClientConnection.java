@@ -42,8 +42,10 @@
  */
 package org.jenkinsci.plugins.gitclient.jgit;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
@@ -60,6 +62,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
@@ -73,6 +79,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.NTCredentials;
@@ -83,6 +90,10 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.SystemDefaultCredentialsProvider;
@@ -128,6 +139,23 @@ public class PreemptiveAuthHttpClientConnection implements HttpConnection {
 
     SSLContext ctx;
 
+    private boolean pooled;
+
+    /* Every pooled connection was in use, requests of this connection use a client of their own */
+    private boolean poolExhausted;
+
+    private String userToken;
+
+    private HttpHost targetHost;
+
+    private int fixedContentLength = -1;
+
+    private StreamedRequestBody streamedBody;
+
+    private CountDownLatch streamedResponseWanted;
+
+    private Future<HttpResponse> streamedResponse;
+
     private final SmartCredentialsProvider credentialsProvider;
 
     public PreemptiveAuthHttpClientConnection(final SmartCredentialsProvider credentialsProvider, final String urlStr) {
@@ -182,25 +210,18 @@ public class PreemptiveAuthHttpClientConnection implements HttpConnection {
             } catch (final URISyntaxException e) {
                 throw new Error(e);
             }
-            final HttpHost targetHost =
-                    new HttpHost(serviceUri.getHost(), serviceUri.getPort(), serviceUri.getScheme());
+            targetHost = new HttpHost(serviceUri.getHost(), serviceUri.getPort(), serviceUri.getScheme());
 
             CredentialsProvider clientCredentialsProvider = new SystemDefaultCredentialsProvider();
-            if (credentialsProvider.supports(u, p)) {
-                URIish uri = serviceUri;
-                while (uri != null) {
-                    if (credentialsProvider.get(uri, u, p)) {
-                        final String userName = u.getValue();
-                        final String password = new String(p.getValue());
-                        p.clear();
-                        final Credentials credentials = createNTCredentials(userName, password);
-                        final AuthScope authScope = new AuthScope(targetHost);
-                        clientCredentialsProvider = new BasicCredentialsProvider();
-                        clientCredentialsProvider.setCredentials(authScope, credentials);
-                        break;
-                    }
-                    uri = goUp(uri);
-                }
+            if (credentialsProvider.supports(u, p) && credentialsProvider.getWithParents(serviceUri, u, p)) {
+                final String userName = u.getValue();
+                final String password = new String(p.getValue());
+                p.clear();
+                final Credentials credentials = createNTCredentials(userName, password);
+                userToken = HttpClientConnectionPool.userToken(userName, password);
+                final AuthScope authScope = new AuthScope(targetHost);
+                clientCredentialsProvider = new BasicCredentialsProvider();
+                clientCredentialsProvider.setCredentials(authScope, credentials);
             }
             builder.setDefaultCredentialsProvider(clientCredentialsProvider);
 
@@ -220,13 +241,18 @@ public class PreemptiveAuthHttpClientConnection implements HttpConnection {
                 requestConfigBuilder.setRedirectsEnabled(followRedirects);
             }
             requestConfigBuilder.setAuthenticationEnabled(true);
-            final RequestConfig requestConfig = requestConfigBuilder.build();
-
-            builder.setDefaultRequestConfig(requestConfig);
 
             if (hostnameverifier != null) {
                 builder.setSSLHostnameVerifier(hostnameverifier);
+            } else if (HttpClientConnectionPool.isEnabled() && !poolExhausted) {
+                // Connections with the default hostname verifier are shared, see HttpClientConnectionPool
+                pooled = true;
+                HttpClientConnectionPool.configure(builder);
+                requestConfigBuilder.setConnectionRequestTimeout(HttpClientConnectionPool.LEASE_TIMEOUT_MILLIS);
             }
+
+            final RequestConfig requestConfig = requestConfigBuilder.build();
+            builder.setDefaultRequestConfig(requestConfig);
             client = builder.build();
         }
 
@@ -310,17 +336,113 @@ public class PreemptiveAuthHttpClientConnection implements HttpConnection {
 
     private void execute() throws IOException {
         if (resp == null) {
-            if (entity != null) {
+            if (streamedResponse != null) {
+                resp = awaitStreamedResponse();
+            } else if (entity != null) {
                 if (req instanceof HttpEntityEnclosingRequest) {
                     HttpEntityEnclosingRequest eReq = (HttpEntityEnclosingRequest) req;
                     eReq.setEntity(entity);
                 }
-                resp = getClient().execute(req);
+                resp = send();
                 entity.getBuffer().close();
                 entity = null;
             } else {
-                resp = getClient().execute(req);
+                resp = send();
+            }
+        }
+    }
+
+    private HttpResponse send() throws IOException {
+        HttpClient httpClient = getClient();
+        HttpClientContext context = HttpClientContext.create();
+        context.setUserToken(userToken);
+        if ((pooled || poolExhausted) && userToken != null) {
+            context.setAuthCache(HttpClientConnectionPool.authCache(userToken));
+        }
+        HttpResponse response;
+        try {
+            response = httpClient.execute(req, context);
+        } catch (ConnectionPoolTimeoutException e) {
+            // Nothing has been sent yet, send the request with a connection of its own rather than wait for the pool
+            poolExhausted = true;
+            pooled = false;
+            client = null;
+            return send();
+        }
+        HttpEntity responseEntity = response.getEntity();
+        if (pooled && responseEntity != null && response.getStatusLine().getStatusCode() >= 300) {
+            // JGit does not always read error responses, read them here so that the connection returns to the pool
+            response.setEntity(new BufferedHttpEntity(responseEntity));
+        }
+        return response;
+    }
+
+    /**
+     * The request body can be streamed while it is written if the request will not be sent again for authentication,
+     * because the connection has no credential or because the server already accepted the credential with a scheme
+     * which is sent preemptively.
+     */
+    private boolean canStreamBody() {
+        if (!(req instanceof HttpEntityEnclosingRequest) || streamedResponse != null) {
+            return false;
+        }
+        getClient();
+        return pooled && (userToken == null || HttpClientConnectionPool.authCache(userToken).get(targetHost) != null);
+    }
+
+    private OutputStream streamBody() throws IOException {
+        long idleMillis =
+                readTimeout != null && readTimeout > 0 ? readTimeout : HttpClientConnectionPool.STREAM_IDLE_MILLIS;
+        StreamedRequestBody body = new StreamedRequestBody(HttpClientConnectionPool.STREAM_BUFFER_SIZE, idleMillis);
+        CountDownLatch wanted = new CountDownLatch(1);
+        ((HttpEntityEnclosingRequest) req).setEntity(new InputStreamEntity(body.source, fixedContentLength));
+        if (entity != null) {
+            entity.getBuffer().close();
+            entity = null;
+        }
+        streamedBody = body;
+        streamedResponseWanted = wanted;
+        streamedResponse = HttpClientConnectionPool.BODY_SENDERS.submit(() -> {
+            HttpResponse response;
+            try {
+                response = send();
+            } catch (IOException | RuntimeException e) {
+                // Fails the writes of JGit if the request failed before the whole body was sent
+                body.abort(e instanceof IOException ? (IOException) e : new IOException(e));
+                throw e;
+            }
+            body.abort(new IOException("Request to " + urlStr + " has already been sent"));
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED && userToken != null) {
+                // The credential is no longer accepted, later requests need to buffer their body for a challenge
+                HttpClientConnectionPool.authCache(userToken).remove(targetHost);
+            }
+            // The response holds a pooled connection until it is read, release it if JGit abandoned the request
+            if (!wanted.await(idleMillis, TimeUnit.MILLISECONDS)) {
+                if (response instanceof Closeable) {
+                    ((Closeable) response).close();
+                }
+                throw new InterruptedIOException("Response to " + urlStr + " was not read");
+            }
+            return response;
+        });
+        return body.sink;
+    }
+
+    private HttpResponse awaitStreamedResponse() throws IOException {
+        streamedBody.sink.close();
+        streamedResponseWanted.countDown();
+        try {
+            return streamedResponse.get();
+        } catch (InterruptedException e) {
+            streamedResponse.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response to " + urlStr);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
+            throw new IOException("Failed to send request to " + urlStr, cause);
         }
     }
 
@@ -425,10 +547,17 @@ public class PreemptiveAuthHttpClientConnection implements HttpConnection {
         }
         entity = new TemporaryBufferEntity(new TemporaryBuffer.LocalFile(null));
         entity.setContentLength(contentLength);
+        fixedContentLength = contentLength;
     }
 
     @Override
-    public OutputStream getOutputStream() {
+    public OutputStream getOutputStream() throws IOException {
+        if (streamedBody != null) {
+            return streamedBody.sink;
+        }
+        if (canStreamBody()) {
+            return streamBody();
+        }
         if (entity == null) {
             entity = new TemporaryBufferEntity(new TemporaryBuffer.LocalFile(null));
         }
@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.gitclient.jgit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipe between JGit, which writes a request body, and the thread which sends the request with the body.
+ * <p>
+ * Unlike {@link java.io.PipedInputStream}, a read fails once nothing has been written for the idle timeout, even
+ * though the writing thread is still alive. A sender whose body JGit abandoned, for example because JGit failed while
+ * writing it, then gives up and its connection returns to the pool. Once the sender gave up or finished, writes fail
+ * rather than block.
+ */
+final class StreamedRequestBody {
+
+    private final byte[] buffer;
+    private final long idleNanos;
+    private int readPos;
+    private int count;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * @param size bytes buffered between the writer and the reader
+     * @param idleMillis milliseconds a read waits for the writer
+     */
+    StreamedRequestBody(int size, long idleMillis) {
+        this.buffer = new byte[size];
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    /**
+     * Written by JGit, closed when the whole body has been written.
+     */
+    final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            StreamedRequestBody.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            StreamedRequestBody.this.close();
+        }
+    };
+
+    /**
+     * Read by the thread which sends the request.
+     */
+    final InputStream source = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return StreamedRequestBody.this.read(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            abort(new IOException("Request body is no longer read"));
+        }
+    };
+
+    /**
+     * Fail later reads and writes, and wake the threads waiting in them.
+     *
+     * @param cause why the body is no longer transferred
+     */
+    synchronized void abort(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        notifyAll();
+    }
+
+    private synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private synchronized void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (failure != null) {
+                throw new IOException("Request body is no longer read", failure);
+            }
+            if (closed) {
+                throw new IOException("Request body has been closed");
+            }
+            if (count == buffer.length) {
+                await(0);
+                continue;
+            }
+            int writePos = (readPos + count) % buffer.length;
+            int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+            System.arraycopy(b, off, buffer, writePos, n);
+            count += n;
+            off += n;
+            len -= n;
+            notifyAll();
+        }
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + idleNanos;
+        while (count == 0) {
+            if (failure != null) {
+                throw new IOException("Request body has been aborted", failure);
+            }
+            if (closed) {
+                return -1;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                failure = new InterruptedIOException(
+                        "No request body written for " + TimeUnit.NANOSECONDS.toMillis(idleNanos) + " ms");
+                notifyAll();
+                throw failure;
+            }
+            await(remaining);
+        }
+        int n = Math.min(len, Math.min(count, buffer.length - readPos));
+        System.arraycopy(buffer, readPos, b, off, n);
+        readPos = (readPos + n) % buffer.length;
+        count -= n;
+        notifyAll();
+        return n;
+    }
+
+    private void await(long nanos) throws InterruptedIOException {
+        try {
+            if (nanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            } else {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while streaming request body");
+            abort(interrupted);
+            throw interrupted;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.jenkinsci.plugins.gitclient.trilead;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Credentials registered for repository urls, shared by {@link SmartCredentialsProvider} and the command line git
+ * implementation.
+ * <p>
+ * Urls are split at '/' into a trie, host first and then the path segments, so that the credentials of a url and of
+ * its closest parent url are found with a single walk of the url. A trailing '/' and a trailing ".git" are ignored.
+ * Updates replace the trie, so lookups never lock and always see a consistent set of credentials.
+ */
+@Restricted(NoExternalUse.class)
+public final class CredentialsIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final Node EMPTY = new Node(Collections.emptyMap(), null);
+
+        final Map<String, Node> children;
+        final StandardCredentials credentials;
+
+        Node(Map<String, Node> children, StandardCredentials credentials) {
+            this.children = children;
+            this.credentials = credentials;
+        }
+
+        Node withChild(String segment, Node child) {
+            Map<String, Node> copy = new HashMap<>(children);
+            if (child.children.isEmpty() && child.credentials == null) {
+                copy.remove(segment);
+            } else {
+                copy.put(segment, child);
+            }
+            return new Node(Collections.unmodifiableMap(copy), credentials);
+        }
+    }
+
+    private volatile Node root = Node.EMPTY;
+
+    /**
+     * @param url repository url
+     * @param credentials credentials to use for the url, null to remove the credentials of the url
+     */
+    public synchronized void put(@NonNull String url, @CheckForNull StandardCredentials credentials) {
+        List<String> segments = segments(url);
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        for (String segment : segments) {
+            path.push(node);
+            node = node.children.getOrDefault(segment, Node.EMPTY);
+        }
+        Node updated = new Node(node.children, credentials);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            updated = path.pop().withChild(segments.get(i), updated);
+        }
+        root = updated;
+    }
+
+    /**
+     * Remove all credentials.
+     */
+    public synchronized void clear() {
+        root = Node.EMPTY;
+    }
+
+    /**
+     * @param url repository url
+     * @return credentials registered for the url, null if there are none
+     */
+    @CheckForNull
+    public StandardCredentials get(@CheckForNull String url) {
+        if (url == null) {
+            return null;
+        }
+        Node node = root;
+        for (String segment : segments(url)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.credentials;
+    }
+
+    /**
+     * @param url repository url
+     * @return credentials registered for the url or else for its closest parent url, null if there are none
+     */
+    @CheckForNull
+    public StandardCredentials getClosest(@CheckForNull String url) {
+        if (url == null) {
+            return null;
+        }
+        StandardCredentials closest = null;
+        Node node = root;
+        for (String segment : segments(url)) {
+            if (segment.endsWith(".git")) {
+                // A parent url which ends with ".git" is registered without it
+                Node repository = node.children.get(segment.substring(0, segment.length() - ".git".length()));
+                if (repository != null && repository.credentials != null) {
+                    closest = repository.credentials;
+                }
+            }
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            if (node.credentials != null) {
+                closest = node.credentials;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @return all registered credentials
+     */
+    @NonNull
+    public List<StandardCredentials> values() {
+        List<StandardCredentials> values = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (node.credentials != null) {
+                values.add(node.credentials);
+            }
+            for (Node child : node.children.values()) {
+                pending.push(child);
+            }
+        }
+        return values;
+    }
+
+    private static List<String> segments(String url) {
+        String normalized = StringUtils.removeEnd(StringUtils.removeEnd(url, "/"), ".git");
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int slash;
+        while ((slash = normalized.indexOf('/', start)) >= 0) {
+            segments.add(normalized.substring(start, slash));
+            start = slash + 1;
+        }
+        segments.add(normalized.substring(start));
+        return segments;
+    }
+}
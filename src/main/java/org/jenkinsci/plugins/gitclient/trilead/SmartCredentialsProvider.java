@@ -4,12 +4,11 @@ import com.cloudbees.plugins.credentials.common.PasswordCredentials;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.UsernameCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.model.TaskListener;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.errors.UnsupportedCredentialItem;
 import org.eclipse.jgit.transport.CredentialItem;
 import org.eclipse.jgit.transport.CredentialsProvider;
@@ -24,9 +23,9 @@ public class SmartCredentialsProvider extends CredentialsProvider {
 
     public final TaskListener listener;
 
-    private StandardCredentials defaultCredentials;
+    private volatile StandardCredentials defaultCredentials;
 
-    private Map<String, StandardCredentials> specificCredentials = new HashMap<>();
+    private final CredentialsIndex specificCredentials = new CredentialsIndex();
     private static final Logger LOGGER = Logger.getLogger(SmartCredentialsProvider.class.getName());
 
     /**
@@ -43,7 +42,7 @@ public class SmartCredentialsProvider extends CredentialsProvider {
      *
      * @since 1.2.0
      */
-    public synchronized void clearCredentials() {
+    public void clearCredentials() {
         defaultCredentials = null;
         specificCredentials.clear();
     }
@@ -55,8 +54,8 @@ public class SmartCredentialsProvider extends CredentialsProvider {
      * @param credentials the credentials to use.
      * @since 1.2.0
      */
-    public synchronized void addCredentials(String url, StandardCredentials credentials) {
-        specificCredentials.put(normalizeURI(url), credentials);
+    public void addCredentials(String url, StandardCredentials credentials) {
+        specificCredentials.put(url, credentials);
     }
 
     /**
@@ -66,10 +65,23 @@ public class SmartCredentialsProvider extends CredentialsProvider {
      * @see #addCredentials(String, com.cloudbees.plugins.credentials.common.StandardCredentials)
      * @since 1.2.0
      */
-    public synchronized void addDefaultCredentials(StandardCredentials credentials) {
+    public void addDefaultCredentials(StandardCredentials credentials) {
         defaultCredentials = credentials;
     }
 
+    /**
+     * Returns the credentials which will be used against a specific url.
+     *
+     * @param url the url for the credentials to be used against.
+     * @return the credentials specific to the url, the default credentials if there are none, or null.
+     * @since 4.7.0
+     */
+    @CheckForNull
+    public StandardCredentials getCredentials(String url) {
+        StandardCredentials c = specificCredentials.get(url);
+        return c == null ? defaultCredentials : c;
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean isInteractive() {
@@ -78,13 +90,18 @@ public class SmartCredentialsProvider extends CredentialsProvider {
 
     /** {@inheritDoc} */
     @Override
-    public synchronized boolean supports(CredentialItem... credentialItems) {
+    public boolean supports(CredentialItem... credentialItems) {
+        StandardCredentials defaultCredentials = this.defaultCredentials;
+        List<StandardCredentials> values = null;
         items:
         for (CredentialItem item : credentialItems) {
             if (supports(defaultCredentials, item)) {
                 continue;
             }
-            for (StandardCredentials c : specificCredentials.values()) {
+            if (values == null) {
+                values = specificCredentials.values();
+            }
+            for (StandardCredentials c : values) {
                 if (supports(c, item)) {
                     continue items;
                 }
@@ -112,11 +129,37 @@ public class SmartCredentialsProvider extends CredentialsProvider {
 
     /** {@inheritDoc} */
     @Override
-    public synchronized boolean get(URIish uri, CredentialItem... credentialItems) throws UnsupportedCredentialItem {
-        StandardCredentials c = specificCredentials.get(uri == null ? null : normalizeURI(uri.toString()));
+    public boolean get(URIish uri, CredentialItem... credentialItems) throws UnsupportedCredentialItem {
+        StandardCredentials c = specificCredentials.get(uri == null ? null : uri.toString());
+        if (c == null) {
+            c = defaultCredentials;
+        }
+        return fill(uri, c, credentialItems);
+    }
+
+    /**
+     * Like {@link #get(URIish, CredentialItem...)}, but if there are neither credentials specific to the url nor
+     * default credentials, uses the credentials of the closest parent url which has specific credentials.
+     *
+     * @param uri the url for the credentials to be used against.
+     * @param credentialItems the items to fill.
+     * @return true if the items were filled.
+     * @throws UnsupportedCredentialItem if the credentials cannot fill an item.
+     */
+    public boolean getWithParents(URIish uri, CredentialItem... credentialItems) throws UnsupportedCredentialItem {
+        String url = uri == null ? null : uri.toString();
+        StandardCredentials c = specificCredentials.get(url);
         if (c == null) {
             c = defaultCredentials;
         }
+        if (c == null) {
+            c = specificCredentials.getClosest(url);
+        }
+        return fill(uri, c, credentialItems);
+    }
+
+    private boolean fill(URIish uri, StandardCredentials c, CredentialItem... credentialItems)
+            throws UnsupportedCredentialItem {
         if (c == null) {
             if (uri != null) {
                 LOGGER.log(Level.FINE, () -> "No credentials provided for " + uri);
@@ -151,8 +194,4 @@ public class SmartCredentialsProvider extends CredentialsProvider {
         }
         return true;
     }
-
-    private String normalizeURI(String uri) {
-        return StringUtils.removeEnd(StringUtils.removeEnd(uri, "/"), ".git");
-    }
 }
@@ -1,10 +1,10 @@
 package org.jenkinsci.plugins.gitclient.trilead;
 
 import com.cloudbees.jenkins.plugins.sshcredentials.SSHAuthenticator;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.trilead.ssh2.Connection;
 import hudson.model.TaskListener;
 import java.io.IOException;
-import java.util.concurrent.locks.ReentrantLock;
 import org.eclipse.jgit.errors.TransportException;
 import org.eclipse.jgit.errors.UnsupportedCredentialItem;
 import org.eclipse.jgit.transport.CredentialsProvider;
@@ -12,7 +12,6 @@ import org.eclipse.jgit.transport.RemoteSession;
 import org.eclipse.jgit.transport.SshSessionFactory;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.util.FS;
-import org.jenkinsci.plugins.gitclient.verifier.AcceptFirstConnectionVerifier;
 import org.jenkinsci.plugins.gitclient.verifier.HostKeyVerifierFactory;
 
 /**
@@ -22,8 +21,6 @@ import org.jenkinsci.plugins.gitclient.verifier.HostKeyVerifierFactory;
  */
 public class TrileadSessionFactory extends SshSessionFactory {
 
-    private static final ReentrantLock JGIT_ACCEPT_FIRST_LOCK = new ReentrantLock();
-
     private final HostKeyVerifierFactory hostKeyVerifierFactory;
     private final TaskListener listener;
 
@@ -32,7 +29,12 @@ public class TrileadSessionFactory extends SshSessionFactory {
         this.listener = listener;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * Authenticated connections are taken from and returned to {@link TrileadSessionPool}, see
+     * {@link TrileadSessionPool#IDLE_SECONDS}.
+     */
     @Override
     public RemoteSession getSession(URIish uri, CredentialsProvider credentialsProvider, FS fs, int tms)
             throws TransportException {
@@ -41,48 +43,82 @@ public class TrileadSessionFactory extends SshSessionFactory {
             if (p < 0) {
                 p = 22;
             }
-            JGitConnection con = new JGitConnection(uri.getHost(), p);
-            con.setTCPNoDelay(true);
-            if (hostKeyVerifierFactory instanceof AcceptFirstConnectionVerifier) {
-                // Accept First connection behavior need to be synchronized, because it's the only verifier
-                // which could change (populate) known hosts dynamically, in other words AcceptFirstConnectionVerifier
-                // should be able to see and read if any known hosts was added during parallel connection.
-                JGIT_ACCEPT_FIRST_LOCK.lock();
-                try {
-                    con.connect(hostKeyVerifierFactory.forJGit(listener));
-                } finally {
-                    JGIT_ACCEPT_FIRST_LOCK.unlock();
-                }
-            } else {
-                con.connect(hostKeyVerifierFactory.forJGit(listener));
-            }
 
-            boolean authenticated;
+            StandardUsernameCredentials cred = null;
+            String user = null;
+            TaskListener authListener = null;
             if (credentialsProvider instanceof SmartCredentialsProvider) {
                 final SmartCredentialsProvider smart = (SmartCredentialsProvider) credentialsProvider;
                 StandardUsernameCredentialsCredentialItem item =
                         new StandardUsernameCredentialsCredentialItem("Credentials for " + uri, false);
-                authenticated = smart.supports(item)
-                        && smart.get(uri, item)
-                        && SSHAuthenticator.newInstance(con, item.getValue(), uri.getUser())
-                                .authenticate(smart.listener);
+                if (smart.supports(item) && smart.get(uri, item)) {
+                    cred = item.getValue();
+                    user = uri.getUser();
+                    authListener = smart.listener;
+                }
             } else if (credentialsProvider instanceof CredentialsProviderImpl) {
                 CredentialsProviderImpl sshcp = (CredentialsProviderImpl) credentialsProvider;
+                cred = sshcp.cred;
+                authListener = sshcp.listener;
+            }
 
-                authenticated = SSHAuthenticator.newInstance(con, sshcp.cred).authenticate(sshcp.listener);
-            } else {
-                authenticated = false;
+            TrileadSessionPool pool = TrileadSessionPool.INSTANCE;
+            String poolKey = null;
+            if (cred != null && pool.isEnabled()) {
+                poolKey = TrileadSessionPool.key(uri.getHost(), p, user, hostKeyVerifierFactory.getIdentity(), cred);
+                Connection pooled = pool.acquire(poolKey);
+                if (pooled != null) {
+                    return new PooledSession(wrap(pooled), pool, poolKey, pooled);
+                }
             }
+
+            JGitConnection con = new JGitConnection(uri.getHost(), p);
+            con.setTCPNoDelay(true);
+            // AcceptFirstConnectionVerifier serializes connections to the same host while it verifies the host key
+            con.connect(hostKeyVerifierFactory.forJGit(listener));
+
+            boolean authenticated =
+                    cred != null && SSHAuthenticator.newInstance(con, cred, user).authenticate(authListener);
             if (!authenticated && con.isAuthenticationComplete()) {
                 throw new TransportException("Authentication failure");
             }
 
+            if (authenticated && poolKey != null) {
+                return new PooledSession(wrap(con), pool, poolKey, con);
+            }
             return wrap(con);
         } catch (UnsupportedCredentialItem | IOException | InterruptedException e) {
             throw new TransportException(uri, "Failed to connect", e);
         }
     }
 
+    /**
+     * Session whose connection goes back to the pool when JGit releases it.
+     */
+    private static final class PooledSession implements RemoteSession {
+        private final RemoteSession session;
+        private final TrileadSessionPool pool;
+        private final String key;
+        private final Connection con;
+
+        PooledSession(RemoteSession session, TrileadSessionPool pool, String key, Connection con) {
+            this.session = session;
+            this.pool = pool;
+            this.key = key;
+            this.con = con;
+        }
+
+        @Override
+        public Process exec(String commandName, int timeout) throws IOException {
+            return session.exec(commandName, timeout);
+        }
+
+        @Override
+        public void disconnect() {
+            pool.release(key, con);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getType() {
@@ -0,0 +1,243 @@
+package org.jenkinsci.plugins.gitclient.trilead;
+
+import com.cloudbees.jenkins.plugins.sshcredentials.SSHUserPrivateKey;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.trilead.ssh2.Connection;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Authenticated Trilead connections which are kept open between JGit transports, so that sequential ls-remote and
+ * fetch calls to the same host skip the key exchange, host key verification and authentication.
+ * <p>
+ * Connections are keyed by host, port, user, the host keys the verifier accepts and a fingerprint of the credential,
+ * so a connection is only reused with the credential it was authenticated with and the host keys it was verified
+ * against. An idle connection is closed after
+ * {@link #IDLE_SECONDS}, and it is checked by opening a channel before it is handed out again.
+ */
+final class TrileadSessionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(TrileadSessionPool.class.getName());
+
+    /**
+     * Constant which sets the seconds an authenticated ssh connection is kept for reuse by JGit.
+     *
+     * <code>IDLE_SECONDS=Integer.getInteger(TrileadSessionPool.class.getName() + ".idleSeconds", 30)</code>.
+     *
+     * Connections which are not reused within that time are closed.
+     *
+     * Use '-Dorg.jenkinsci.plugins.gitclient.trilead.TrileadSessionPool.idleSeconds=0'
+     * to open a new connection for every JGit transport as in earlier releases.
+     */
+    static final int IDLE_SECONDS = Integer.getInteger(TrileadSessionPool.class.getName() + ".idleSeconds", 30);
+
+    /* Idle connections kept per key, parallel fetches to the same host need more than one */
+    private static final int MAX_IDLE_PER_KEY = 4;
+
+    /* Idle connections kept in total */
+    private static final int MAX_IDLE = 64;
+
+    static final TrileadSessionPool INSTANCE = new TrileadSessionPool(TimeUnit.SECONDS.toNanos(IDLE_SECONDS));
+
+    private static final ScheduledExecutorService IDLE_REAPER = createIdleReaper();
+
+    private static ScheduledExecutorService createIdleReaper() {
+        ScheduledThreadPoolExecutor reaper = new ScheduledThreadPoolExecutor(
+                1, new NamingThreadFactory(new DaemonThreadFactory(), TrileadSessionPool.class.getSimpleName()));
+        reaper.setRemoveOnCancelPolicy(true);
+        return reaper;
+    }
+
+    private static final class Idle {
+        final Connection con;
+        final long since;
+
+        Idle(Connection con, long since) {
+            this.con = con;
+            this.since = since;
+        }
+    }
+
+    private final long idleNanos;
+    private final Map<String, Deque<Idle>> idle = new HashMap<>();
+    private int idleCount;
+    private boolean reaperScheduled;
+
+    TrileadSessionPool(long idleNanos) {
+        this.idleNanos = idleNanos;
+    }
+
+    boolean isEnabled() {
+        return idleNanos > 0;
+    }
+
+    /**
+     * @param host host of the connection
+     * @param port port of the connection
+     * @param user user name given in the url, null if the credential provides it
+     * @param verifier identity of the host key verifier the connection is checked with, see
+     *     {@link org.jenkinsci.plugins.gitclient.verifier.HostKeyVerifierFactory#getIdentity()}
+     * @param cred credential the connection is authenticated with
+     * @return key of the connection in the pool
+     */
+    @NonNull
+    static String key(
+            @NonNull String host,
+            int port,
+            @CheckForNull String user,
+            @NonNull String verifier,
+            @NonNull StandardUsernameCredentials cred) {
+        return host + ':' + port + '\n' + user + '\n' + verifier + '\n' + fingerprint(cred);
+    }
+
+    /**
+     * @param cred credential
+     * @return digest of the credential, which changes when its secrets change
+     */
+    @NonNull
+    static String fingerprint(@NonNull StandardUsernameCredentials cred) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, cred.getClass().getName());
+            update(digest, cred.getUsername());
+            if (cred instanceof SSHUserPrivateKey) {
+                SSHUserPrivateKey key = (SSHUserPrivateKey) cred;
+                for (String privateKey : key.getPrivateKeys()) {
+                    update(digest, privateKey);
+                }
+                update(digest, Secret.toString(key.getPassphrase()));
+            } else if (cred instanceof StandardUsernamePasswordCredentials) {
+                update(digest, Secret.toString(((StandardUsernamePasswordCredentials) cred).getPassword()));
+            }
+            return Util.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Take an idle connection out of the pool.
+     *
+     * @param key key of the connection
+     * @return healthy authenticated connection, null if the pool has none for the key
+     */
+    @CheckForNull
+    Connection acquire(@NonNull String key) {
+        while (true) {
+            Idle candidate;
+            synchronized (this) {
+                Deque<Idle> connections = idle.get(key);
+                candidate = connections == null ? null : connections.pollFirst();
+                if (candidate == null) {
+                    return null;
+                }
+                idleCount--;
+                if (connections.isEmpty()) {
+                    idle.remove(key);
+                }
+            }
+            if (System.nanoTime() - candidate.since < idleNanos && isHealthy(candidate.con)) {
+                return candidate.con;
+            }
+            candidate.con.close();
+        }
+    }
+
+    /**
+     * Return a connection to the pool, or close it if the pool is full.
+     *
+     * @param key key of the connection
+     * @param con connection which has no open sessions
+     */
+    void release(@NonNull String key, @NonNull Connection con) {
+        if (!con.isAuthenticationComplete()) {
+            con.close();
+            return;
+        }
+        synchronized (this) {
+            Deque<Idle> connections = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (connections.size() < MAX_IDLE_PER_KEY && idleCount < MAX_IDLE) {
+                // Most recently used first, so the least recently used ones expire
+                connections.addFirst(new Idle(con, System.nanoTime()));
+                idleCount++;
+                scheduleReaper();
+                return;
+            }
+            if (connections.isEmpty()) {
+                idle.remove(key);
+            }
+        }
+        con.close();
+    }
+
+    private static boolean isHealthy(Connection con) {
+        if (!con.isAuthenticationComplete()) {
+            return false;
+        }
+        try {
+            // Opening a channel is a round trip which fails if the server dropped the connection
+            con.openSession().close();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.log(Level.FINE, "Dropping broken pooled ssh connection to " + con.getHostname(), e);
+            return false;
+        }
+    }
+
+    private void scheduleReaper() {
+        if (!reaperScheduled) {
+            reaperScheduled = true;
+            IDLE_REAPER.schedule(this::closeExpired, idleNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void closeExpired() {
+        List<Connection> expired = new ArrayList<>();
+        synchronized (this) {
+            reaperScheduled = false;
+            long now = System.nanoTime();
+            for (Iterator<Deque<Idle>> it = idle.values().iterator(); it.hasNext(); ) {
+                Deque<Idle> connections = it.next();
+                while (!connections.isEmpty() && now - connections.peekLast().since >= idleNanos) {
+                    expired.add(connections.pollLast().con);
+                    idleCount--;
+                }
+                if (connections.isEmpty()) {
+                    it.remove();
+                }
+            }
+            if (idleCount > 0) {
+                scheduleReaper();
+            }
+        }
+        for (Connection con : expired) {
+            con.close();
+        }
+    }
+}
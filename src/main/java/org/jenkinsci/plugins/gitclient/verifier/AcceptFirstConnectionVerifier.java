@@ -5,10 +5,11 @@ import com.trilead.ssh2.KnownHosts;
 import hudson.model.TaskListener;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Base64;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,6 +17,17 @@ public class AcceptFirstConnectionVerifier extends HostKeyVerifierFactory {
 
     private static final Logger LOGGER = Logger.getLogger(AcceptFirstConnectionVerifier.class.getName());
 
+    /* Serializes the verification of connections to the same host:port, so that its key is only added once */
+    private static final Lock[] HOST_LOCKS = createHostLocks(64);
+
+    private static Lock[] createHostLocks(int stripes) {
+        Lock[] locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
     @Override
     public AbstractCliGitHostKeyVerifier forCliGit(TaskListener listener) {
         return tempKnownHosts -> {
@@ -29,8 +41,7 @@ public class AcceptFirstConnectionVerifier extends HostKeyVerifierFactory {
     public AbstractJGitHostKeyVerifier forJGit(TaskListener listener) {
         KnownHosts knownHosts;
         try {
-            knownHosts =
-                    Files.exists(getKnownHostsFile().toPath()) ? new KnownHosts(getKnownHostsFile()) : new KnownHosts();
+            knownHosts = KnownHostsCache.forFile(getKnownHostsFile());
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, e, () -> "Could not load known hosts.");
             knownHosts = new KnownHosts();
@@ -63,23 +74,25 @@ public class AcceptFirstConnectionVerifier extends HostKeyVerifierFactory {
             Path path = Paths.get(knownHostsFile.getAbsolutePath());
             String hostnamePort = hostname + ":" + port;
             boolean isValid = false;
-            if (Files.notExists(path)) {
-                Files.createDirectories(knownHostsFile.getParentFile().toPath());
-                Files.createFile(path);
-                listener.getLogger().println("Creating new known hosts file " + path);
-                writeToFile(knownHostsFile, hostnamePort, serverHostKeyAlgorithm, serverHostKey);
-                isValid = true;
-            } else {
-                KnownHosts knownHosts = getKnownHosts();
-                int hostPortResult = knownHosts.verifyHostkey(hostnamePort, serverHostKeyAlgorithm, serverHostKey);
-                if (KnownHosts.HOSTKEY_IS_OK == hostPortResult
-                        || KnownHosts.HOSTKEY_IS_OK
-                                == knownHosts.verifyHostkey(hostname, serverHostKeyAlgorithm, serverHostKey)) {
-                    isValid = true;
-                } else if (KnownHosts.HOSTKEY_IS_NEW == hostPortResult) {
-                    writeToFile(knownHostsFile, hostnamePort, serverHostKeyAlgorithm, serverHostKey);
-                    isValid = true;
+            Lock hostLock = HOST_LOCKS[Math.floorMod(hostnamePort.hashCode(), HOST_LOCKS.length)];
+            hostLock.lock();
+            try {
+                int result = verify(getKnownHosts(), hostname, hostnamePort, serverHostKeyAlgorithm, serverHostKey);
+                if (KnownHosts.HOSTKEY_IS_NEW == result) {
+                    // The known hosts were read before the connection, another connection may have added the host
+                    result = verify(
+                            KnownHostsCache.forFile(knownHostsFile),
+                            hostname,
+                            hostnamePort,
+                            serverHostKeyAlgorithm,
+                            serverHostKey);
+                    if (KnownHosts.HOSTKEY_IS_NEW == result) {
+                        writeToFile(knownHostsFile, hostnamePort, serverHostKeyAlgorithm, serverHostKey);
+                    }
                 }
+                isValid = KnownHosts.HOSTKEY_IS_OK == result || KnownHosts.HOSTKEY_IS_NEW == result;
+            } finally {
+                hostLock.unlock();
             }
 
             if (!isValid) {
@@ -93,9 +106,28 @@ public class AcceptFirstConnectionVerifier extends HostKeyVerifierFactory {
             return isValid;
         }
 
+        private int verify(
+                KnownHosts knownHosts,
+                String hostname,
+                String hostnamePort,
+                String serverHostKeyAlgorithm,
+                byte[] serverHostKey)
+                throws IOException {
+            int hostPortResult = knownHosts.verifyHostkey(hostnamePort, serverHostKeyAlgorithm, serverHostKey);
+            if (KnownHosts.HOSTKEY_IS_OK == hostPortResult
+                    || KnownHosts.HOSTKEY_IS_OK
+                            == knownHosts.verifyHostkey(hostname, serverHostKeyAlgorithm, serverHostKey)) {
+                return KnownHosts.HOSTKEY_IS_OK;
+            }
+            return hostPortResult;
+        }
+
         private void writeToFile(
                 File knownHostsFile, String hostnamePort, String serverHostKeyAlgorithm, byte[] serverHostKey)
                 throws IOException {
+            if (KnownHostsCache.append(knownHostsFile, hostnamePort, serverHostKeyAlgorithm, serverHostKey)) {
+                listener.getLogger().println("Creating new known hosts file " + knownHostsFile.toPath());
+            }
             listener.getLogger().println("Adding " + hostnamePort + " to " + knownHostsFile.toPath());
             LOGGER.log(
                     Level.FINEST,
@@ -106,16 +138,6 @@ public class AcceptFirstConnectionVerifier extends HostKeyVerifierFactory {
                         serverHostKeyAlgorithm,
                         Base64.getEncoder().encodeToString(serverHostKey)
                     });
-            KnownHosts.addHostkeyToFile(
-                    knownHostsFile,
-                    new String[] {KnownHosts.createHashedHostname(hostnamePort)},
-                    serverHostKeyAlgorithm,
-                    serverHostKey);
-            getKnownHosts()
-                    .addHostkey(
-                            new String[] {KnownHosts.createHashedHostname(hostnamePort)},
-                            serverHostKeyAlgorithm,
-                            serverHostKey);
         }
     }
 }
@@ -16,6 +16,13 @@ public abstract class HostKeyVerifierFactory implements SerializableOnlyOverRemo
      */
     public abstract AbstractJGitHostKeyVerifier forJGit(TaskListener listener);
 
+    /**
+     * @return description of the host keys this factory accepts, equal for factories which accept the same host keys
+     */
+    public String getIdentity() {
+        return getClass().getName() + '\n' + getKnownHostsFile().getAbsolutePath();
+    }
+
     File getKnownHostsFile() {
         return SshHostKeyVerificationStrategy.JGIT_KNOWN_HOSTS_FILE;
     }
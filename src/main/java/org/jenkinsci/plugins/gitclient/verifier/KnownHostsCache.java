@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.gitclient.verifier;
+
+import com.trilead.ssh2.KnownHosts;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parsed known hosts shared by the verifiers of all connections.
+ * <p>
+ * A known hosts file is parsed again only when its modification time or size changed since it was last parsed. Keys
+ * appended through {@link #append(File, String, String, byte[])} are added to the shared parsed copy as well, so an
+ * accept-first connection does not cause the next connection to parse the whole file again. The parsed copies are
+ * only read by the verifiers, apart from those appends, which Trilead {@link KnownHosts} synchronizes.
+ */
+final class KnownHostsCache {
+
+    private static final class Parsed {
+        final FileTime lastModified;
+        final long size;
+        final KnownHosts knownHosts;
+
+        Parsed(FileTime lastModified, long size, KnownHosts knownHosts) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.knownHosts = knownHosts;
+        }
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+        }
+    }
+
+    private static final Map<File, Parsed> FILES = new HashMap<>();
+
+    private static String approvedHostKeys;
+    private static KnownHosts approvedKnownHosts;
+
+    private KnownHostsCache() {}
+
+    /**
+     * @param file known hosts file
+     * @return parsed known hosts of the file, empty if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    @NonNull
+    static synchronized KnownHosts forFile(@NonNull File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        BasicFileAttributes attributes = attributes(key.toPath());
+        if (attributes == null) {
+            FILES.remove(key);
+            return new KnownHosts();
+        }
+        Parsed parsed = FILES.get(key);
+        if (parsed == null || !parsed.isCurrent(attributes)) {
+            parsed = new Parsed(attributes.lastModifiedTime(), attributes.size(), new KnownHosts(key));
+            FILES.put(key, parsed);
+        }
+        return parsed.knownHosts;
+    }
+
+    /**
+     * @param text known hosts entries
+     * @return parsed known hosts entries, the same object while the entries do not change
+     * @throws IOException if the entries cannot be parsed
+     */
+    @NonNull
+    static synchronized KnownHosts forText(@CheckForNull String text) throws IOException {
+        if (text == null) {
+            return new KnownHosts();
+        }
+        if (!text.equals(approvedHostKeys)) {
+            approvedKnownHosts = new KnownHosts(text.toCharArray());
+            approvedHostKeys = text;
+        }
+        return approvedKnownHosts;
+    }
+
+    /**
+     * Append a host key to a known hosts file, creating the file if needed, and to its parsed copy.
+     *
+     * @param file known hosts file
+     * @param hostname host name, or host name and port, of the key
+     * @param serverHostKeyAlgorithm algorithm of the key
+     * @param serverHostKey the key
+     * @return true if the file was created
+     * @throws IOException if the file cannot be written
+     */
+    static synchronized boolean append(
+            @NonNull File file, @NonNull String hostname, @NonNull String serverHostKeyAlgorithm, byte[] serverHostKey)
+            throws IOException {
+        File key = file.getAbsoluteFile();
+        Path path = key.toPath();
+        boolean created = false;
+        if (Files.notExists(path)) {
+            Files.createDirectories(key.getParentFile().toPath());
+            Files.createFile(path);
+            created = true;
+        }
+        BasicFileAttributes before = attributes(path);
+        Parsed parsed = FILES.get(key);
+        // Keep the parsed copy only if it matched the file before the append, then it only lacks the appended key
+        KnownHosts knownHosts = null;
+        if (created) {
+            knownHosts = new KnownHosts();
+        } else if (parsed != null && before != null && parsed.isCurrent(before)) {
+            knownHosts = parsed.knownHosts;
+        }
+        KnownHosts.addHostkeyToFile(
+                key, new String[] {KnownHosts.createHashedHostname(hostname)}, serverHostKeyAlgorithm, serverHostKey);
+        BasicFileAttributes after = attributes(path);
+        if (knownHosts != null && after != null) {
+            knownHosts.addHostkey(
+                    new String[] {KnownHosts.createHashedHostname(hostname)}, serverHostKeyAlgorithm, serverHostKey);
+            FILES.put(key, new Parsed(after.lastModifiedTime(), after.size(), knownHosts));
+        } else {
+            FILES.remove(key);
+        }
+        return created;
+    }
+
+    @CheckForNull
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -35,7 +35,7 @@ public class KnownHostsFileVerifier extends HostKeyVerifierFactory {
         KnownHosts knownHosts;
         try {
             if (Files.exists(getKnownHostsFile().toPath())) {
-                knownHosts = new KnownHosts(getKnownHostsFile());
+                knownHosts = KnownHostsCache.forFile(getKnownHostsFile());
             } else {
                 logHint(listener);
                 knownHosts = new KnownHosts();
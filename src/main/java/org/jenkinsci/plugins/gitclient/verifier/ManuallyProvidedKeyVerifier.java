@@ -21,6 +21,11 @@ public class ManuallyProvidedKeyVerifier extends HostKeyVerifierFactory {
         this.approvedHostKeys = approvedHostKeys;
     }
 
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + '\n' + approvedHostKeys;
+    }
+
     @Override
     public AbstractCliGitHostKeyVerifier forCliGit(TaskListener listener) {
         return tempKnownHosts -> {
@@ -49,7 +54,7 @@ public class ManuallyProvidedKeyVerifier extends HostKeyVerifierFactory {
     public AbstractJGitHostKeyVerifier forJGit(TaskListener listener) {
         KnownHosts knownHosts;
         try {
-            knownHosts = approvedHostKeys != null ? new KnownHosts(approvedHostKeys.toCharArray()) : new KnownHosts();
+            knownHosts = KnownHostsCache.forText(approvedHostKeys);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, e, () -> "Could not load known hosts.");
             knownHosts = new KnownHosts();
@@ -17,6 +17,8 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
  * provided by JMH
  */
 public class BenchmarkRunner {
+    private static final String PARAM_PREFIX = "benchmark.param.";
+
     /**
      * Returns true if property benchmark.run is set.
      * @return true if benchmarks should be run
@@ -44,6 +46,13 @@ public class BenchmarkRunner {
                 .resultFormat(ResultFormatType.JSON) // store the results in a file called jmh-report.json
                 .result("jmh-report.json");
 
+        // Override benchmark parameters, for example -Dbenchmark.param.commits=100,10000
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PARAM_PREFIX)) {
+                options.param(name.substring(PARAM_PREFIX.length()), System.getProperty(name).split(","));
+            }
+        }
+
         BenchmarkFinder bf = new BenchmarkFinder(getClass());
         bf.findBenchmarks(options);
         new Runner(options.build()).run();
@@ -0,0 +1,188 @@
+package jmh.benchmark;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.StringWriter;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A JMH micro-benchmark performance test, it compares local repository operations of the "git" and "jgit"
+ * implementations represented by CliGitAPIImpl and JGitAPIImpl respectively.
+ * <p>
+ * The repository is generated by {@link SyntheticRepository}, its size is chosen with the parameters of
+ * {@link RepositoryState}. {@link BenchmarkRunner} overrides a parameter with the system property
+ * "benchmark.param." followed by the parameter name, for example
+ * {@code mvn -P jmh-benchmark -Dbenchmark.run=true -Dbenchmark.param.commits=100,10000 test} to benchmark other sizes.
+ */
+@JmhBenchmark
+public class GitClientLocalOperationsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        @Param({"git", "jgit"})
+        String gitExe;
+
+        @Param({"1000"})
+        int commits;
+
+        @Param({"100"})
+        int branches;
+
+        @Param({"100"})
+        int tags;
+
+        @Param({"1000"})
+        int files;
+
+        @Param({"0"})
+        int submodules;
+
+        final FolderForBenchmark tmp = new FolderForBenchmark();
+        File repoDir;
+        String firstCommit;
+        String oldestTag;
+        GitClient gitClient;
+
+        @Setup(Level.Trial)
+        public void createRepository() throws Exception {
+            tmp.before();
+            repoDir = tmp.newFolder();
+            SyntheticRepository repository = new SyntheticRepository(commits, branches, tags, files, submodules);
+            repository.create(repoDir, tmp.newFolder());
+            firstCommit = repository.getFirstCommit().name();
+            oldestTag = tags > 0 ? "tag-0" : firstCommit;
+            gitClient = Git.with(TaskListener.NULL, new EnvVars())
+                    .in(repoDir)
+                    .using(gitExe)
+                    .getClient();
+            System.out.println("Created repository with " + commits + " commits for: " + gitExe);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            gitClient.close();
+            tmp.after();
+            System.out.println("Removed repository for: " + gitExe);
+        }
+    }
+
+    /**
+     * Working copy for operations which modify the repository, one per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class WorkspaceState {
+
+        final FolderForBenchmark tmp = new FolderForBenchmark();
+        File workspace;
+        GitClient gitClient;
+        boolean onFirstCommit;
+
+        @Setup(Level.Trial)
+        public void cloneRepository(RepositoryState repositoryState) throws Exception {
+            tmp.before();
+            workspace = tmp.newFolder();
+            gitClient = Git.with(TaskListener.NULL, new EnvVars())
+                    .in(workspace)
+                    .using(repositoryState.gitExe)
+                    .getClient();
+            gitClient.clone_().url(repositoryState.repoDir.getAbsolutePath()).execute();
+            gitClient.checkout().ref("origin/" + SyntheticRepository.DEFAULT_BRANCH).execute();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            gitClient.close();
+            tmp.after();
+        }
+    }
+
+    /**
+     * Empty directory for each clone.
+     */
+    @State(Scope.Thread)
+    public static class CloneState {
+
+        final FolderForBenchmark tmp = new FolderForBenchmark();
+        GitClient gitClient;
+
+        @Setup(Level.Invocation)
+        public void setup(RepositoryState repositoryState) throws Exception {
+            tmp.before();
+            gitClient = Git.with(TaskListener.NULL, new EnvVars())
+                    .in(tmp.newFolder())
+                    .using(repositoryState.gitExe)
+                    .getClient();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            gitClient.close();
+            tmp.after();
+        }
+    }
+
+    @Benchmark
+    public void revParseBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.revParse("HEAD"));
+    }
+
+    @Benchmark
+    public void revListBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.revList(SyntheticRepository.DEFAULT_BRANCH));
+    }
+
+    @Benchmark
+    public void getBranchesContainingBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.getBranchesContaining(state.firstCommit, true));
+    }
+
+    @Benchmark
+    public void getTagsBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.getTags());
+    }
+
+    @Benchmark
+    public void describeBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.describe("HEAD"));
+    }
+
+    @Benchmark
+    public void changelogBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        StringWriter writer = new StringWriter();
+        state.gitClient
+                .changelog()
+                .excludes(state.oldestTag)
+                .includes("HEAD")
+                .to(writer)
+                .execute();
+        blackhole.consume(writer.toString());
+    }
+
+    @Benchmark
+    public void lsTreeBenchmark(RepositoryState state, Blackhole blackhole) throws Exception {
+        blackhole.consume(state.gitClient.lsTree("HEAD", true));
+    }
+
+    @Benchmark
+    public void checkoutBenchmark(WorkspaceState workspaceState, RepositoryState state) throws Exception {
+        // Alternate between the oldest and the newest commit, so that every checkout changes the files
+        String ref = workspaceState.onFirstCommit ? "origin/" + SyntheticRepository.DEFAULT_BRANCH : state.firstCommit;
+        workspaceState.gitClient.checkout().ref(ref).execute();
+        workspaceState.onFirstCommit = !workspaceState.onFirstCommit;
+    }
+
+    @Benchmark
+    public void cloneBenchmark(CloneState cloneState, RepositoryState state) throws Exception {
+        cloneState
+                .gitClient
+                .clone_()
+                .url(state.repoDir.getAbsolutePath())
+                .execute();
+    }
+}
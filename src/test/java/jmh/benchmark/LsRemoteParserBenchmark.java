@@ -0,0 +1,84 @@
+package jmh.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.LsRemoteParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A JMH micro-benchmark performance test, it compares {@link LsRemoteParser} with the line splitting parser which
+ * CliGitAPIImpl used for getRemoteReferences in earlier releases.
+ * <p>
+ * The output resembles a Gerrit server, most references are changes and some are annotated tags. It is generated,
+ * so the benchmark does not depend on the network.
+ */
+@JmhBenchmark
+public class LsRemoteParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class OutputState {
+
+        @Param({"1000", "300000"})
+        int refs;
+
+        String output;
+
+        @Setup(Level.Trial)
+        public void generateOutput() {
+            StringBuilder builder = new StringBuilder(refs * 80);
+            for (int i = 0; i < refs; i++) {
+                String id = ObjectId.fromRaw(new int[] {i, i * 31, i * 17, ~i, i ^ 0x5a5a5a5a}).name();
+                if (i % 100 == 0) {
+                    builder.append(id).append("\trefs/tags/v").append(i).append('\n');
+                    builder.append(id).append("\trefs/tags/v").append(i).append("^{}\n");
+                } else if (i % 10 == 0) {
+                    builder.append(id).append("\trefs/heads/branch-").append(i).append('\n');
+                } else {
+                    builder.append(id)
+                            .append("\trefs/changes/")
+                            .append(i % 100 / 10)
+                            .append(i % 10)
+                            .append('/')
+                            .append(i)
+                            .append("/1\n");
+                }
+            }
+            output = builder.toString();
+        }
+    }
+
+    @Benchmark
+    public void lineSplittingParser(OutputState state, Blackhole blackhole) {
+        Map<String, ObjectId> references = new HashMap<>();
+        String[] lines = state.output.split("\n");
+        for (String line : lines) {
+            if (line.length() < 41) {
+                continue;
+            }
+            String refName = line.substring(41);
+            ObjectId refObjectId = ObjectId.fromString(line.substring(0, 40));
+            if (refName.startsWith("refs/tags") && refName.endsWith("^{}")) {
+                references.put(refName.replace("^{}", ""), refObjectId);
+            } else if (!references.containsKey(refName)) {
+                references.put(refName, refObjectId);
+            }
+        }
+        blackhole.consume(references);
+    }
+
+    @Benchmark
+    public void lsRemoteParser(OutputState state, Blackhole blackhole) {
+        Map<String, ObjectId> references = new HashMap<>();
+        LsRemoteParser.parse(state.output, (refName, refObjectId, peeled) -> {
+            if (peeled && refName.startsWith("refs/tags")) {
+                references.put(refName, refObjectId);
+            } else {
+                references.putIfAbsent(peeled ? refName + "^{}" : refName, refObjectId);
+            }
+        });
+        blackhole.consume(references);
+    }
+}
@@ -0,0 +1,146 @@
+package jmh.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Generates a local git repository of a chosen size, so that benchmarks do not depend on the network or on the
+ * history of a public repository.
+ * <p>
+ * The repository has a linear history on its default branch. Branches and annotated tags are spread evenly along
+ * that history, each commit modifies one of the files and submodules are added by the last commits.
+ */
+public class SyntheticRepository {
+
+    static final String DEFAULT_BRANCH = "master";
+
+    private final int commits;
+    private final int branches;
+    private final int tags;
+    private final int files;
+    private final int submodules;
+
+    private RevCommit firstCommit;
+
+    /**
+     * @param commits number of commits on the default branch, at least 1
+     * @param branches number of branches in addition to the default branch
+     * @param tags number of annotated tags
+     * @param files number of files in the working tree
+     * @param submodules number of submodules, each a repository with a single commit
+     */
+    public SyntheticRepository(int commits, int branches, int tags, int files, int submodules) {
+        this.commits = Math.max(commits, 1);
+        this.branches = branches;
+        this.tags = tags;
+        this.files = Math.max(files, 1);
+        this.submodules = submodules;
+    }
+
+    /**
+     * Create the repository.
+     *
+     * @param dir empty directory which becomes the working tree of the repository
+     * @param submoduleDir empty directory in which the repositories of the submodules are created
+     * @throws Exception on failure to create the repository
+     */
+    public void create(File dir, File submoduleDir) throws Exception {
+        PersonIdent ident = new PersonIdent("Benchmark Author", "benchmark@example.com", 1600000000000L, 0);
+        try (Git git = Git.init()
+                .setDirectory(dir)
+                .setInitialBranch(DEFAULT_BRANCH)
+                .call()) {
+            for (int i = 0; i < files; i++) {
+                write(file(dir, i), "file " + i + "\n");
+            }
+            git.add().addFilepattern(".").call();
+            int branchInterval = interval(branches);
+            int tagInterval = interval(tags);
+            int branchCount = 0;
+            int tagCount = 0;
+            for (int c = 0; c < commits; c++) {
+                if (c > 0) {
+                    File changed = file(dir, c % files);
+                    write(changed, "file " + (c % files) + " commit " + c + "\n");
+                    git.add().addFilepattern(".").call();
+                }
+                if (c >= commits - submodules) {
+                    addSubmodule(git, submoduleDir, commits - c - 1);
+                }
+                PersonIdent when = new PersonIdent(ident, ident.getWhen().getTime() + c * 60000L, 0);
+                RevCommit commit = git.commit()
+                        .setMessage("Commit " + c + "\n\nChanges file " + (c % files) + "\n")
+                        .setAuthor(when)
+                        .setCommitter(when)
+                        .setSign(false)
+                        .call();
+                if (c == 0) {
+                    firstCommit = commit;
+                }
+                if (branchCount < branches && c % branchInterval == 0) {
+                    git.branchCreate()
+                            .setName("branch-" + branchCount++)
+                            .setStartPoint(commit)
+                            .call();
+                }
+                if (tagCount < tags && c % tagInterval == 0) {
+                    git.tag()
+                            .setName("tag-" + tagCount++)
+                            .setObjectId(commit)
+                            .setMessage("Tag at commit " + c)
+                            .setTagger(when)
+                            .setSigned(false)
+                            .call();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first commit of the history, which every branch contains
+     */
+    public RevCommit getFirstCommit() {
+        return firstCommit;
+    }
+
+    private int interval(int count) {
+        return count <= 0 ? Integer.MAX_VALUE : Math.max(1, commits / count);
+    }
+
+    private void addSubmodule(Git git, File submoduleDir, int index) throws Exception {
+        File moduleRepo = new File(submoduleDir, "module-" + index);
+        try (Git module = Git.init()
+                .setDirectory(moduleRepo)
+                .setInitialBranch(DEFAULT_BRANCH)
+                .call()) {
+            write(new File(moduleRepo, "README"), "module " + index + "\n");
+            module.add().addFilepattern("README").call();
+            module.commit()
+                    .setMessage("Module " + index)
+                    .setAuthor("Benchmark Author", "benchmark@example.com")
+                    .setCommitter("Benchmark Author", "benchmark@example.com")
+                    .setSign(false)
+                    .call();
+        }
+        git.submoduleAdd()
+                .setPath("modules/module-" + index)
+                .setURI(moduleRepo.toURI().toString())
+                .call()
+                .close();
+    }
+
+    /* Spread the files over directories of at most 100 files */
+    private static File file(File dir, int index) {
+        return new File(dir, "dir-" + (index / 100) + File.separator + "file-" + index + ".txt");
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
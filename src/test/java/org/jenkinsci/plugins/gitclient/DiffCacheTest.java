@@ -0,0 +1,109 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiffCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolderRule = new TemporaryFolder();
+
+    private static final ObjectId COMMIT = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    private static final ObjectId PARENT = ObjectId.fromString("89abcdef0123456789abcdef0123456789abcdef");
+
+    private File cacheDir;
+
+    @Before
+    public void createCacheDir() throws Exception {
+        cacheDir = temporaryFolderRule.newFolder();
+    }
+
+    @Test
+    public void keyDependsOnParentAndSettings() {
+        String key = DiffCache.key(COMMIT, PARENT, "raw");
+        assertThat(DiffCache.key(COMMIT, PARENT, "raw"), is(key));
+        assertThat(DiffCache.key(COMMIT, null, "raw"), is(not(key)));
+        assertThat(DiffCache.key(COMMIT, PARENT, "raw renameLimit=1"), is(not(key)));
+        assertThat(DiffCache.key(PARENT, COMMIT, "raw"), is(not(key)));
+    }
+
+    @Test
+    public void diffReadBack() {
+        DiffCache cache = new DiffCache(cacheDir.toPath(), 1024);
+        String key = DiffCache.key(COMMIT, PARENT, "raw");
+        assertThat(cache.get(key), is(nullValue()));
+        cache.put(key, ":100644 100644 abc def M\tREADME\n\n");
+        assertThat(cache.get(key), is(":100644 100644 abc def M\tREADME\n\n"));
+        assertThat(new DiffCache(cacheDir.toPath(), 1024).get(key), is(":100644 100644 abc def M\tREADME\n\n"));
+    }
+
+    @Test
+    public void leastRecentlyUsedDiffEvicted() throws Exception {
+        DiffCache cache = new DiffCache(cacheDir.toPath(), 110);
+        String diff = "0123456789012345678901234567890123456789";
+        String first = DiffCache.key(COMMIT, null, "raw");
+        String second = DiffCache.key(COMMIT, PARENT, "raw");
+        String third = DiffCache.key(PARENT, null, "raw");
+        cache.put(first, diff);
+        cache.put(second, diff);
+        // Make the modification times distinct on file systems with a coarse resolution
+        File firstFile = new File(cacheDir, first.substring(0, 2) + File.separator + first.substring(2));
+        assertThat(firstFile.setLastModified(System.currentTimeMillis() - 60000), is(true));
+        cache.put(third, diff);
+        assertThat(cache.get(first), is(nullValue()));
+        assertThat(cache.get(second), is(diff));
+        assertThat(cache.get(third), is(diff));
+    }
+
+    @Test
+    public void firstPutEvictsOversizedCache() throws Exception {
+        String diff = "0123456789012345678901234567890123456789";
+        String first = DiffCache.key(COMMIT, null, "raw");
+        String second = DiffCache.key(COMMIT, PARENT, "raw");
+        String third = DiffCache.key(PARENT, null, "raw");
+        new DiffCache(cacheDir.toPath(), 1024).put(first, diff);
+        new DiffCache(cacheDir.toPath(), 1024).put(second, diff);
+        File firstFile = new File(cacheDir, first.substring(0, 2) + File.separator + first.substring(2));
+        assertThat(firstFile.setLastModified(System.currentTimeMillis() - 60000), is(true));
+        // A cache which was left larger than its size by an earlier process
+        DiffCache cache = new DiffCache(cacheDir.toPath(), 110);
+        cache.put(third, diff);
+        assertThat(cache.get(first), is(nullValue()));
+        assertThat(cache.get(third), is(diff));
+    }
+
+    @Test
+    public void cacheDisabledByDefault() throws Exception {
+        File gitDir = new File(temporaryFolderRule.newFolder(), ".git");
+        try (Repository repo = FileRepositoryBuilder.create(gitDir)) {
+            assertThat(DiffCache.forRepository(repo), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void cacheSharedByRepository() throws Exception {
+        File gitDir = new File(temporaryFolderRule.newFolder(), ".git");
+        long maxSize = DiffCache.MAX_SIZE;
+        DiffCache.MAX_SIZE = 1024 * 1024;
+        try (Repository repo = FileRepositoryBuilder.create(gitDir);
+                Repository sameRepo = FileRepositoryBuilder.create(gitDir)) {
+            DiffCache cache = DiffCache.forRepository(repo);
+            assertThat(cache, is(not(nullValue())));
+            assertThat(DiffCache.forRepository(sameRepo), is(sameInstance(cache)));
+        } finally {
+            DiffCache.MAX_SIZE = maxSize;
+        }
+    }
+}
@@ -1919,6 +1919,20 @@ public class GitClientTest {
         assertThat(resultRef, contains(commitA));
     }
 
+    @Test
+    public void testRevListPacked() throws Exception {
+        ObjectId commitA = commitOneFile();
+        ObjectId commitB = commitOneFile();
+
+        ObjectIdArray resultAll = new ObjectIdArray();
+        gitClient.revList_().to(resultAll).all(true).execute();
+        assertThat(resultAll.asList(), contains(commitB, commitA));
+
+        ObjectIdArray resultRef = new ObjectIdArray();
+        gitClient.revList_().to(resultRef).reference(defaultBranchName).execute();
+        assertThat(resultRef.asList(), contains(commitB, commitA));
+    }
+
     @Test
     public void testRevListAll() throws Exception {
         ObjectId commitA = commitOneFile();
@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import hudson.FilePath;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class GitCommandStatisticsTest {
+
+    private static GitCommandEvent event(String operation, long millis, int exitStatus) {
+        return new GitCommandEvent("git", operation, TimeUnit.MILLISECONDS.toNanos(millis), 100, exitStatus);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertThat(new GitCommandStatistics().isEnabled(), is(false));
+    }
+
+    @Test
+    public void recordsPerOperation() {
+        GitCommandStatistics statistics = new GitCommandStatistics();
+        statistics.onCompleted(event("fetch", 5, 0));
+        statistics.onCompleted(event("fetch", 70, 128));
+        statistics.onCompleted(event("rev-list", 700000, 0));
+
+        List<GitCommandStatistics.Operation> operations = statistics.getOperations();
+        assertThat(operations, hasSize(2));
+        GitCommandStatistics.Operation fetch = operations.stream()
+                .filter(o -> o.getOperation().equals("fetch"))
+                .findFirst()
+                .get();
+        assertThat(fetch.getImplementation(), is("git"));
+        assertThat(fetch.getCount(), is(2L));
+        assertThat(fetch.getFailures(), is(1L));
+        assertThat(fetch.getOutputBytes(), is(200L));
+        assertThat(fetch.getTotalDurationNanos(), is(TimeUnit.MILLISECONDS.toNanos(75)));
+
+        long[] histogram = fetch.getDurationHistogram();
+        assertThat(histogram.length, is(GitCommandStatistics.getDurationBucketsMillis().length + 1));
+        assertThat(histogram[0], is(1L));
+        assertThat(histogram[2], is(1L));
+
+        GitCommandStatistics.Operation revList = operations.stream()
+                .filter(o -> o.getOperation().equals("rev-list"))
+                .findFirst()
+                .get();
+        assertThat(revList.getDurationHistogram()[histogram.length - 1], is(1L));
+    }
+
+    @Test
+    public void agentOperationsReadOverChannel() throws Exception {
+        /* Without Jenkins this JVM reports to its own statistics, as an agent does */
+        assertThat(GitCommandListener.all(), hasItem(GitCommandStatistics.local()));
+        GitCommandStatistics.local().onCompleted(event("agent-fetch", 5, 0));
+        List<String> operations = GitCommandStatistics.getOperations(FilePath.localChannel).stream()
+                .map(GitCommandStatistics.Operation::getOperation)
+                .collect(Collectors.toList());
+        assertThat(operations, hasItem("agent-fetch"));
+    }
+}
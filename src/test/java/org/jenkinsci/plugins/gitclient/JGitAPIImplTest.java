@@ -1,6 +1,28 @@
 package org.jenkinsci.plugins.gitclient;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeTrue;
+
+import hudson.plugins.git.Branch;
 import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
 
 /**
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
@@ -25,4 +47,123 @@ public class JGitAPIImplTest extends GitAPITestUpdate {
     protected String getRemoteBranchPrefix() {
         return "";
     }
+
+    @Test
+    public void testRepositoryReusedUntilClose() throws Exception {
+        w.init();
+        w.commitEmpty("init");
+        Repository first;
+        try (Repository repo = w.git.getRepository()) {
+            first = repo;
+        }
+        try (Repository repo = w.git.getRepository()) {
+            /* Still usable after the earlier caller closed it */
+            assertThat(repo.resolve("HEAD"), is(w.head()));
+            if (File.pathSeparatorChar != ';') {
+                assertThat(repo, is(sameInstance(first)));
+            }
+        }
+        w.git.close();
+        try (Repository repo = w.git.getRepository()) {
+            assertThat(repo, is(not(sameInstance(first))));
+            assertThat(repo.resolve("HEAD"), is(w.head()));
+        }
+    }
+
+    @Test
+    public void testRepositoryReleasedWhenIdle() throws Exception {
+        assumeTrue(File.pathSeparatorChar != ';');
+        w.init();
+        w.commitEmpty("init");
+        long idleTimeout = JGitAPIImpl.CACHE_REPOSITORY_IDLE_TIMEOUT;
+        JGitAPIImpl.CACHE_REPOSITORY_IDLE_TIMEOUT = 100L;
+        try {
+            Repository first;
+            try (Repository repo = w.git.getRepository()) {
+                first = repo;
+            }
+            Thread.sleep(1000L);
+            try (Repository repo = w.git.getRepository()) {
+                assertThat(repo, is(not(sameInstance(first))));
+                assertThat(repo.resolve("HEAD"), is(w.head()));
+            }
+        } finally {
+            JGitAPIImpl.CACHE_REPOSITORY_IDLE_TIMEOUT = idleTimeout;
+        }
+    }
+
+    @Test
+    public void testBranchesContainingManyBranches() throws Exception {
+        w.init();
+        w.commitEmpty("c1");
+        ObjectId c1 = w.head();
+        for (int i = 0; i < 30; i++) {
+            w.git.branch("before-" + i);
+        }
+        w.commitEmpty("c2");
+        ObjectId c2 = w.head();
+        for (int i = 0; i < 30; i++) {
+            w.git.branch("after-" + i);
+        }
+        /* Merge commit reaches c2 through its second parent only */
+        w.launchCommand("git", "checkout", "-b", "side", "before-0");
+        w.commitEmpty("side");
+        w.launchCommand("git", "merge", "--no-ff", "-m", "merge", defaultBranchName);
+
+        List<Branch> containingC2 = w.git.getBranchesContaining(c2.name(), false);
+        assertThat(containingC2, hasSize(32));
+        List<String> names = containingC2.stream().map(Branch::getName).collect(Collectors.toList());
+        assertThat(names, hasItems(defaultBranchName, "side", "after-0", "after-29"));
+        assertThat(names, not(hasItem("before-0")));
+        assertThat(w.git.getBranchesContaining(c1.name(), false), hasSize(62));
+    }
+
+    @Test
+    public void testChangelogThreadsKeepOrder() throws Exception {
+        w.init();
+        for (int i = 0; i < 40; i++) {
+            w.touch("file-" + (i % 7), "content " + i);
+            w.git.add("file-" + (i % 7));
+            w.git.commit("commit " + i);
+        }
+        assertThat(changelog(4), is(changelog(1)));
+        assertThat(changelog(4), containsString("commit 0"));
+    }
+
+    private String changelog(int threads) throws Exception {
+        StringWriter changelog = new StringWriter();
+        try (Repository repo = w.repo();
+                RevWalk walk = new RevWalk(repo);
+                PrintWriter pw = new PrintWriter(changelog)) {
+            walk.markStart(walk.parseCommit(repo.resolve("HEAD")));
+            JGitAPIImpl.writeChangelog(repo, walk, pw, threads);
+        }
+        return changelog.toString();
+    }
+
+    @Test
+    public void testDescribeAfterNewTag() throws Exception {
+        w.init();
+        w.commitEmpty("c1");
+        w.git.tag("t1", "first tag");
+        w.commitEmpty("c2");
+        ObjectId c2 = w.head();
+        w.commitEmpty("c3");
+        assertThat(w.git.describe("HEAD"), startsWith("t1-2-g"));
+        assertThat(w.git.describe("HEAD"), startsWith("t1-2-g"));
+        w.launchCommand("git", "tag", "-a", "-m", "second tag", "t2", c2.name());
+        assertThat(w.git.describe("HEAD"), startsWith("t2-1-g"));
+        assertThat(w.git.describe(c2.name()), is("t2"));
+    }
+
+    @Test
+    public void testLsRemotePrefixes() {
+        assertThat(JGitAPIImpl.lsRemotePrefixes(null, false, false), is(empty()));
+        assertThat(JGitAPIImpl.lsRemotePrefixes(null, true, true), contains("refs/heads/", "refs/tags/"));
+        assertThat(JGitAPIImpl.lsRemotePrefixes("master", true, false), contains("refs/heads/"));
+        assertThat(JGitAPIImpl.lsRemotePrefixes("refs/heads/feature-*", false, false), contains("refs/heads/feature-"));
+        assertThat(JGitAPIImpl.lsRemotePrefixes("refs/heads/f?o", true, false), contains("refs/heads/f"));
+        assertThat(JGitAPIImpl.lsRemotePrefixes("refs/tags/v1.0", true, true), contains("refs/tags/v1.0"));
+        assertThat(JGitAPIImpl.lsRemotePrefixes("refs/changes/*", true, false), contains("refs/heads/"));
+    }
 }
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import hudson.plugins.git.GitException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LsRemoteCacheTest {
+
+    private static final String URL = "https://example.com/repo.git";
+    private static final List<String> QUERY = Collections.singletonList("heads");
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private String query() {
+        return "result-" + queries.incrementAndGet();
+    }
+
+    @Test
+    public void disabledCacheAlwaysQueries() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(0L, 10);
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-1"));
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-2"));
+    }
+
+    @Test
+    public void resultReusedForSameKey() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(60000L, 10);
+        assertThat(cache.get(URL, "cred", QUERY, this::query), is("result-1"));
+        assertThat(cache.get(URL, "cred", QUERY, this::query), is("result-1"));
+        assertThat(cache.get(URL, "other-cred", QUERY, this::query), is("result-2"));
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-3"));
+        assertThat(cache.get(URL, "cred", Arrays.asList("heads", "main"), this::query), is("result-4"));
+        assertThat(cache.get(URL + "/other", "cred", QUERY, this::query), is("result-5"));
+        cache.clear();
+        assertThat(cache.get(URL, "cred", QUERY, this::query), is("result-6"));
+    }
+
+    @Test
+    public void localRepositoriesNotCached() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(60000L, 10);
+        assertThat(cache.get("../repo.git", null, QUERY, this::query), is("result-1"));
+        assertThat(cache.get("../repo.git", null, QUERY, this::query), is("result-2"));
+        assertThat(cache.get("/srv/git/repo.git", null, QUERY, this::query), is("result-3"));
+        assertThat(cache.get("/srv/git/repo.git", null, QUERY, this::query), is("result-4"));
+        assertThat(cache.get("file:///srv/git/repo.git", null, QUERY, this::query), is("result-5"));
+        assertThat(cache.get("file:///srv/git/repo.git", null, QUERY, this::query), is("result-6"));
+        assertThat(cache.get("git@example.com:repo.git", null, QUERY, this::query), is("result-7"));
+        assertThat(cache.get("git@example.com:repo.git", null, QUERY, this::query), is("result-7"));
+    }
+
+    @Test
+    public void resultExpires() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(1L, 10);
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-1"));
+        Thread.sleep(10);
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-2"));
+    }
+
+    @Test
+    public void oldestResultEvicted() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(60000L, 2);
+        cache.get(URL, null, QUERY, this::query);
+        cache.get(URL, "a", QUERY, this::query);
+        cache.get(URL, "b", QUERY, this::query);
+        assertThat(cache.get(URL, "b", QUERY, this::query), is("result-3"));
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-4"));
+    }
+
+    @Test
+    public void failureNotCached() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(60000L, 10);
+        assertThrows(GitException.class, () -> cache.get(URL, null, QUERY, () -> {
+            queries.incrementAndGet();
+            throw new GitException("remote unavailable");
+        }));
+        assertThat(cache.get(URL, null, QUERY, this::query), is("result-2"));
+    }
+
+    @Test
+    public void concurrentCallersShareOneQuery() throws Exception {
+        LsRemoteCache cache = new LsRemoteCache(60000L, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> cache.get(URL, null, QUERY, () -> {
+                started.countDown();
+                release.await();
+                return query();
+            }));
+            started.await();
+            Future<String> second = executor.submit(() -> cache.get(URL, null, QUERY, this::query));
+            Future<String> third = executor.submit(() -> cache.get(URL, null, QUERY, this::query));
+            release.countDown();
+            assertThat(first.get(10, TimeUnit.SECONDS), is("result-1"));
+            assertThat(second.get(10, TimeUnit.SECONDS), is("result-1"));
+            assertThat(third.get(10, TimeUnit.SECONDS), is("result-1"));
+            assertThat(queries.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class LsRemoteParserTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String TAG = "89ABCDEF0123456789abcdef0123456789abcdef";
+
+    private final List<String> entries = new ArrayList<>();
+
+    private final LsRemoteParser.Listener recorder = new LsRemoteParser.Listener() {
+        @Override
+        public void ref(@NonNull String name, @NonNull ObjectId id, boolean peeled) {
+            entries.add((peeled ? "peeled " : "ref ") + name + " " + id.name());
+        }
+
+        @Override
+        public void symbolicRef(@NonNull String name, @NonNull String target) {
+            entries.add("symref " + name + " " + target);
+        }
+
+        @Override
+        public void unexpected(@NonNull String line) {
+            entries.add("unexpected " + line);
+        }
+    };
+
+    @Test
+    public void parseEntries() {
+        LsRemoteParser.parse(
+                "ref: refs/heads/main\tHEAD\n"
+                        + COMMIT + "\tHEAD\n"
+                        + COMMIT + "\trefs/heads/main\r\n"
+                        + TAG + "\trefs/tags/v1.0\n"
+                        + COMMIT + "\trefs/tags/v1.0^{}\n"
+                        + "\n"
+                        + "warning: redirecting to https://example.com/repo.git/\n"
+                        + COMMIT + "\trefs/heads/no-newline",
+                recorder);
+        assertThat(
+                entries,
+                contains(
+                        "symref HEAD refs/heads/main",
+                        "ref HEAD " + COMMIT,
+                        "ref refs/heads/main " + COMMIT,
+                        "ref refs/tags/v1.0 " + ObjectId.fromString(TAG).name(),
+                        "peeled refs/tags/v1.0 " + COMMIT,
+                        "unexpected warning: redirecting to https://example.com/repo.git/",
+                        "ref refs/heads/no-newline " + COMMIT));
+    }
+
+    @Test
+    public void parseId() {
+        assertThat(LsRemoteParser.parseId(COMMIT + "\trefs/heads/main", 0), is(ObjectId.fromString(COMMIT)));
+        assertThat(LsRemoteParser.parseId("x" + TAG, 1), is(ObjectId.fromString(TAG)));
+        assertThat(LsRemoteParser.parseId(COMMIT.substring(1), 0), is(nullValue()));
+        assertThat(LsRemoteParser.parseId("g" + COMMIT.substring(1), 0), is(nullValue()));
+        assertThat(LsRemoteParser.parseId("", 0), is(nullValue()));
+    }
+}
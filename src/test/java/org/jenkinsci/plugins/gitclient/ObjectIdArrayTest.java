@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.gitclient;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class ObjectIdArrayTest {
+
+    private static final ObjectId ID_A = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    private static final ObjectId ID_B = ObjectId.fromString("fedcba9876543210fedcba9876543210fedcba98");
+
+    @Test
+    public void addAndGet() {
+        ObjectIdArray ids = new ObjectIdArray(0);
+        assertThat(ids.isEmpty(), is(true));
+        ids.add(ID_A);
+        ids.add(ID_B.name());
+        ids.add(ID_B.name().toUpperCase());
+        assertThat(ids.size(), is(3));
+        assertThat(ids.get(0), is(ID_A));
+        assertThat(ids.get(1), is(ID_B));
+        assertThat(ids.get(2), is(ID_B));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(3));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        ObjectIdArray ids = new ObjectIdArray(1);
+        List<ObjectId> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ObjectId id = ObjectId.fromString(String.format("%040x", i));
+            expected.add(id);
+            ids.add(id);
+        }
+        ids.trimToSize();
+        assertThat(ids.asList(), is(expected));
+    }
+
+    @Test
+    public void rejectsInvalidNames() {
+        ObjectIdArray ids = new ObjectIdArray();
+        assertThrows(IllegalArgumentException.class, () -> ids.add("0123"));
+        assertThrows(IllegalArgumentException.class, () -> ids.add("g123456789abcdef0123456789abcdef01234567"));
+        assertThat(ids.isEmpty(), is(true));
+    }
+
+    @Test
+    public void listViewAppends() {
+        ObjectIdArray ids = new ObjectIdArray();
+        List<ObjectId> list = ids.asList();
+        list.add(ID_A);
+        list.add(ID_B);
+        assertThat(ids, contains(ID_A, ID_B));
+        assertThrows(UnsupportedOperationException.class, () -> list.add(0, ID_B));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+    }
+
+    @Test
+    public void truncateDropsTrailingIds() {
+        ObjectIdArray ids = new ObjectIdArray();
+        ids.add(ID_A);
+        ids.add(ID_B);
+        ids.truncate(1);
+        assertThat(ids, contains(ID_A));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.truncate(2));
+        ids.add(ID_B);
+        assertThat(ids, contains(ID_A, ID_B));
+    }
+}
@@ -24,6 +24,7 @@
 package org.jenkinsci.plugins.gitclient;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
@@ -39,9 +40,22 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.plugins.git.GitException;
+import hudson.remoting.Channel;
+import hudson.remoting.ChannelBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.security.Roles;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.junit.Before;
@@ -225,4 +239,93 @@ public class RemoteGitImplTest {
         remoteGit.addRemoteUrl(name + "2", url + "-2");
         assertThat(remoteGit.getRemoteUrl(name + "2"), is(url + "-2"));
     }
+
+    @Test
+    public void testBatch() throws Exception {
+        String name = "originName";
+        String url = "https://github.com/jenkinsci/git-client-plugin";
+        BatchCommand batch = remoteGit.batch();
+        GitClient client = batch.client();
+        assertFalse("recorded call returned a result", client.hasGitRepo());
+        client.init();
+        client.setRemoteUrl(name, url);
+        client.hasGitRepo();
+        assertThat(client.getRemoteUrl(name), is(nullValue()));
+        assertThrows(IllegalStateException.class, batch::results);
+        assertThrows(UnsupportedOperationException.class, client::getRepository);
+        batch.execute();
+        assertThat(batch.results(), is(Arrays.asList(false, null, null, true, url)));
+        assertThat(remoteGit.getRemoteUrl(name), is(url));
+        assertThrows(IllegalStateException.class, batch::execute);
+    }
+
+    @Test
+    public void testBatchStopsAtFailingCall() throws Exception {
+        ObjectId missingCommit = ObjectId.fromString("deededbeadedcededaddedbedded5ea6b842da60");
+        BatchCommand batch = remoteGit.batch();
+        batch.client().init();
+        batch.client().checkout().ref(missingCommit.name()).execute();
+        batch.client().setRemoteUrl("origin", "https://github.com/jenkinsci/git-client-plugin");
+        assertThrows(GitException.class, batch::execute);
+        assertTrue("init in batch not executed", remoteGit.hasGitRepo());
+        if (gitImplName.equals("git")) { // JGit does not throw an exception for undefined remote
+            assertThrows(GitException.class, () -> remoteGit.getRemoteUrl("origin"));
+        } else {
+            assertThat(remoteGit.getRemoteUrl("origin"), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testBatchChangelogOverChannel() throws Exception {
+        ObjectId first = firstCommit("testBatchChangelogOverChannel-first");
+        ObjectId second = firstCommit("testBatchChangelogOverChannel-second");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Future<Channel> agent = executor.submit(() -> new ChannelBuilder("agent", executor)
+                    .withRoles(Roles.SLAVE)
+                    .build(serverSocket.accept()));
+            Channel controller = new ChannelBuilder("controller", executor)
+                    .withRoles(Roles.MASTER)
+                    .build(new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()));
+            try {
+                GitClient agentGit = controller.call(new AgentClient(localFolder, gitImplName));
+                StringWriter changelog = new StringWriter();
+                BatchCommand batch = agentGit.batch();
+                batch.client()
+                        .changelog()
+                        .excludes(first.name())
+                        .includes(second.name())
+                        .to(changelog)
+                        .execute();
+                batch.execute();
+                assertThat(batch.results(), is(Collections.singletonList(null)));
+                assertThat(changelog.toString(), containsString("commit " + second.name()));
+            } finally {
+                controller.close();
+                agent.get().close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class AgentClient extends MasterToSlaveCallable<GitClient, Exception> {
+        private final File folder;
+        private final String implName;
+
+        AgentClient(File folder, String implName) {
+            this.folder = folder;
+            this.implName = implName;
+        }
+
+        @Override
+        public GitClient call() throws Exception {
+            return Git.with(TaskListener.NULL, new EnvVars())
+                    .in(folder)
+                    .using(implName)
+                    .getClient();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
 }
@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeFalse;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CatFileBatchTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File repoDir;
+    private ObjectId head;
+    private CatFileBatch batch;
+
+    @Before
+    public void createRepository() throws Exception {
+        repoDir = tempFolder.newFolder();
+        GitClient git = Git.with(TaskListener.NULL, new EnvVars())
+                .in(repoDir)
+                .using("jgit")
+                .getClient();
+        git.init();
+        Files.write(new File(repoDir, "file.txt").toPath(), "content".getBytes(StandardCharsets.UTF_8));
+        git.add("file.txt");
+        git.setAuthor("Cat File Author", "author@example.com");
+        git.setCommitter("Cat File Committer", "committer@example.com");
+        git.commit("Commit for cat-file batch test");
+        head = git.revParse("HEAD");
+    }
+
+    @After
+    public void closeBatch() {
+        if (batch != null) {
+            batch.close();
+        }
+    }
+
+    private CatFileBatch newBatch(File dir, boolean withContent) {
+        return new CatFileBatch(Collections.singletonList("git"), dir, new EnvVars(), withContent, 10000L, 60000L);
+    }
+
+    @Test
+    public void lookupCommit() throws Exception {
+        batch = newBatch(repoDir, false);
+        CatFileBatch.ObjectInfo info = batch.lookup("HEAD^{commit}");
+        assertThat(info, is(notNullValue()));
+        assertThat(info.getId(), is(head));
+        assertThat(info.getType(), is("commit"));
+        assertThat(info.getContent(), is(nullValue()));
+    }
+
+    @Test
+    public void lookupMissingRef() throws Exception {
+        batch = newBatch(repoDir, false);
+        assertThat(batch.lookup("refs/heads/no-such-branch"), is(nullValue()));
+        /* Process remains usable after a missing object */
+        assertThat(batch.lookup(head.name()).getId(), is(head));
+    }
+
+    @Test
+    public void lookupContent() throws Exception {
+        batch = newBatch(repoDir, true);
+        CatFileBatch.ObjectInfo info = batch.lookup(head.name());
+        assertThat(info, is(notNullValue()));
+        String content = new String(info.getContent(), StandardCharsets.UTF_8);
+        assertThat(content, containsString("Commit for cat-file batch test"));
+        assertThat((long) info.getContent().length, is(info.getSize()));
+    }
+
+    @Test
+    public void lookupAfterClose() throws Exception {
+        batch = newBatch(repoDir, false);
+        assertThat(batch.lookup("HEAD").getId(), is(head));
+        batch.close();
+        assertThat(batch.lookup("HEAD").getId(), is(head));
+    }
+
+    @Test
+    public void lookupRejectsWhitespace() {
+        batch = newBatch(repoDir, false);
+        assertThrows(IOException.class, () -> batch.lookup("HEAD \nHEAD"));
+    }
+
+    @Test
+    public void lookupOutsideRepository() throws Exception {
+        batch = newBatch(tempFolder.newFolder(), false);
+        IOException e = assertThrows(IOException.class, () -> batch.lookup("HEAD"));
+        assertThat(e.getMessage(), containsString("not a git repository"));
+    }
+
+    @Test
+    public void lookupStopsUnresponsiveProcess() throws Exception {
+        assumeFalse(File.pathSeparatorChar == ';');
+        /* Process which reads nothing and never answers */
+        batch = new CatFileBatch(
+                Arrays.asList("sh", "-c", "exec sleep 60", "sh"), repoDir, new EnvVars(), false, 10000L, 500L);
+        long start = System.nanoTime();
+        IOException e = assertThrows(IOException.class, () -> batch.lookup("HEAD"));
+        assertThat(e.getMessage(), containsString("did not answer"));
+        assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.SECONDS.toNanos(30))));
+    }
+}
@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CredentialFilesTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private Path write(Path dir, String content) throws IOException {
+        writes.incrementAndGet();
+        Path file = Files.createTempFile(dir, "cred", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void fileIsWrittenOncePerContent() throws Exception {
+        CredentialFiles files = new CredentialFiles(() -> tmp.newFolder().toPath(), 60000);
+        try {
+            List<String> secret = Collections.singletonList("secret");
+            Path first = files.get("password", "id", secret, dir -> write(dir, "secret"));
+            assertThat(files.get("password", "id", secret, dir -> write(dir, "secret")), is(first));
+            assertThat(writes.get(), is(1));
+            List<String> changed = Collections.singletonList("changed");
+            assertThat(files.get("password", "id", changed, dir -> write(dir, "changed")), is(not(first)));
+            assertThat(files.get("password", "other-id", secret, dir -> write(dir, "secret")), is(not(first)));
+            assertThat(files.get("username", "id", secret, dir -> write(dir, "secret")), is(not(first)));
+            assertThat(writes.get(), is(4));
+        } finally {
+            files.close();
+        }
+    }
+
+    @Test
+    public void closeDeletesFilesAndDirectory() throws Exception {
+        CredentialFiles files = new CredentialFiles(() -> tmp.newFolder().toPath(), 60000);
+        List<String> secret = Collections.singletonList("secret");
+        Path file = files.get("password", "id", secret, dir -> write(dir, "secret"));
+        file.toFile().setReadOnly();
+        files.release(file);
+        files.close();
+        assertThat(Files.exists(file), is(false));
+        assertThat(Files.exists(file.getParent()), is(false));
+        Path rewritten = files.get("password", "id", secret, dir -> write(dir, "secret"));
+        assertThat(Files.exists(rewritten), is(true));
+        assertThat(writes.get(), is(2));
+        files.close();
+    }
+
+    @Test
+    public void closeKeepsFilesInUse() throws Exception {
+        CredentialFiles files = new CredentialFiles(() -> tmp.newFolder().toPath(), 60000);
+        List<String> secret = Collections.singletonList("secret");
+        Path file = files.get("password", "id", secret, dir -> write(dir, "secret"));
+        assertThat(files.get("password", "id", secret, dir -> write(dir, "secret")), is(file));
+        files.release(file);
+        files.close();
+        // Another command still uses the file
+        assertThat(Files.exists(file), is(true));
+        assertThat(files.get("password", "id", secret, dir -> write(dir, "secret")), is(not(file)));
+        files.release(file);
+        assertThat(Files.exists(file), is(false));
+        files.close();
+    }
+
+    @Test
+    public void idleFilesAreWiped() throws Exception {
+        CredentialFiles files = new CredentialFiles(() -> tmp.newFolder().toPath(), 100);
+        List<String> secret = Collections.singletonList("secret");
+        Path file = files.get("password", "id", secret, dir -> write(dir, "secret"));
+        Thread.sleep(300);
+        // Files which are used are not wiped
+        assertThat(Files.exists(file), is(true));
+        files.release(file);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (Files.exists(file) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(Files.exists(file), is(false));
+        assertThat(Files.exists(file.getParent()), is(false));
+    }
+
+    @Test
+    public void wipeOverwritesContent() throws Exception {
+        Path file = tmp.newFile().toPath();
+        Files.write(file, "secret".getBytes(StandardCharsets.UTF_8));
+        Path link = tmp.getRoot().toPath().resolve("link");
+        Files.createLink(link, file);
+        CredentialFiles.wipe(file);
+        assertThat(Files.exists(file), is(false));
+        assertThat(Files.readAllBytes(link), is(new byte[6]));
+    }
+}
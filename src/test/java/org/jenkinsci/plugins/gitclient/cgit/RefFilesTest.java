@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RefFilesTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String TAG = "89abcdef0123456789abcdef0123456789abcdef";
+    private static final String OTHER = "fedcba9876543210fedcba9876543210fedcba98";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File workTree;
+    private File gitDir;
+
+    @Before
+    public void createGitDir() throws Exception {
+        workTree = tempFolder.newFolder();
+        gitDir = new File(workTree, ".git");
+        write("refs/heads/.keep", "");
+        write("config", "[core]\n\trepositoryformatversion = 0\n");
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(gitDir, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void packedAndLooseRefs() throws Exception {
+        write(
+                "packed-refs",
+                "# pack-refs with: peeled fully-peeled sorted \n"
+                        + COMMIT + " refs/heads/master\n"
+                        + TAG + " refs/tags/annotated\n"
+                        + "^" + COMMIT + "\n"
+                        + COMMIT + " refs/tags/lightweight\n"
+                        + COMMIT + " refs/tags/moved\n");
+        write("refs/tags/moved", OTHER + "\n");
+        write("refs/tags/nested/loose", COMMIT + "\n");
+        write("refs/tags/nested/loose.lock", OTHER + "\n");
+        write("refs/remotes/origin/HEAD", "ref: refs/remotes/origin/master\n");
+
+        RefFiles refFiles = RefFiles.forWorkTree(workTree);
+        assertThat(refFiles, is(notNullValue()));
+        Map<String, RefFiles.Entry> tags = refFiles.read("refs/tags/");
+        assertThat(tags.keySet().size(), is(4));
+
+        RefFiles.Entry annotated = tags.get("refs/tags/annotated");
+        assertThat(annotated.getObjectId(), is(ObjectId.fromString(TAG)));
+        assertThat(annotated.getPeeledObjectId(), is(ObjectId.fromString(COMMIT)));
+
+        RefFiles.Entry lightweight = tags.get("refs/tags/lightweight");
+        assertThat(lightweight.isPeeled(), is(true));
+        assertThat(lightweight.getPeeledObjectId(), is(nullValue()));
+
+        RefFiles.Entry moved = tags.get("refs/tags/moved");
+        assertThat(moved.getObjectId(), is(ObjectId.fromString(OTHER)));
+        assertThat(moved.isPeeled(), is(false));
+        assertThat(tags.get("refs/tags/nested/loose").getObjectId(), is(ObjectId.fromString(COMMIT)));
+
+        RefFiles.Entry originHead = refFiles.read("refs/").get("refs/remotes/origin/HEAD");
+        assertThat(originHead.getTarget(), is("refs/remotes/origin/master"));
+        assertThat(originHead.getObjectId(), is(nullValue()));
+    }
+
+    @Test
+    public void gitFile() throws Exception {
+        File linkedWorkTree = tempFolder.newFolder();
+        Files.write(
+                new File(linkedWorkTree, ".git").toPath(),
+                ("gitdir: " + gitDir.getAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+        write("refs/heads/master", COMMIT + "\n");
+        RefFiles refFiles = RefFiles.forWorkTree(linkedWorkTree);
+        assertThat(refFiles, is(notNullValue()));
+        assertThat(
+                refFiles.read("refs/heads/").get("refs/heads/master").getObjectId(), is(ObjectId.fromString(COMMIT)));
+    }
+
+    @Test
+    public void unsupportedRepositories() throws Exception {
+        assertThat(RefFiles.forWorkTree(tempFolder.newFolder()), is(nullValue()));
+        write("config", "[core]\n\trepositoryformatversion = 1\n[extensions]\n\tobjectFormat = sha256\n");
+        assertThat(RefFiles.forWorkTree(workTree), is(nullValue()));
+        write("config", "[core]\n\trepositoryformatversion = 0\n");
+        write("commondir", "../..\n");
+        assertThat(RefFiles.forWorkTree(workTree), is(nullValue()));
+    }
+
+    @Test
+    public void corruptPackedRefs() throws Exception {
+        write("packed-refs", "not a packed-refs line\n");
+        RefFiles refFiles = RefFiles.forWorkTree(workTree);
+        assertThat(refFiles, is(notNullValue()));
+        assertThrows(IOException.class, () -> refFiles.read("refs/"));
+    }
+}
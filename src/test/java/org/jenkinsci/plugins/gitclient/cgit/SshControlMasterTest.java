@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.gitclient.cgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class SshControlMasterTest {
+
+    private static final Pattern CONTROL_PATH = Pattern.compile("\"ControlPath=([^\"]*)\"");
+
+    private static Path controlPath(String options) {
+        assertThat(options, is(notNullValue()));
+        Matcher matcher = CONTROL_PATH.matcher(options);
+        assertThat(options, matcher.find(), is(true));
+        return Paths.get(matcher.group(1));
+    }
+
+    @Test
+    public void socketPerConnection() {
+        SshControlMaster master = new SshControlMaster(30);
+        try {
+            String options = master.options("git", "github.com", -1, "deploy-key");
+            assertThat(options, containsString("ControlMaster=auto"));
+            assertThat(options, containsString("ControlPersist=30"));
+            Path socket = controlPath(options);
+            assertThat(controlPath(master.options("git", "github.com", -1, "deploy-key")), is(socket));
+            assertThat(controlPath(master.options("git", "github.com", -1, "other-key")), is(not(socket)));
+            assertThat(controlPath(master.options("git", "github.com", 2222, "deploy-key")), is(not(socket)));
+            assertThat(controlPath(master.options("git", "gitlab.com", -1, "deploy-key")), is(not(socket)));
+            assertThat(Files.isDirectory(socket.getParent()), is(true));
+        } finally {
+            master.close();
+        }
+    }
+
+    @Test
+    public void socketsPerInstanceInOneDirectory() {
+        SshControlMaster master = new SshControlMaster(30);
+        SshControlMaster other = new SshControlMaster(30);
+        try {
+            Path socket = controlPath(master.options("git", "github.com", 22, "deploy-key"));
+            Path otherSocket = controlPath(other.options("git", "github.com", 22, "deploy-key"));
+            assertThat(otherSocket, is(not(socket)));
+            assertThat(otherSocket.getParent(), is(socket.getParent()));
+        } finally {
+            master.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void closeKeepsSocketDirectory() {
+        SshControlMaster master = new SshControlMaster(30);
+        Path dir = controlPath(master.options("git", "github.com", 22, null)).getParent();
+        master.close();
+        assertThat(Files.isDirectory(dir), is(true));
+        Path reopened = controlPath(master.options("git", "github.com", 22, null)).getParent();
+        assertThat(reopened, is(dir));
+        master.close();
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.gitclient.jgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.AuthCache;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.jenkinsci.plugins.gitclient.trilead.SmartCredentialsProvider;
+import org.junit.Test;
+
+public class HttpClientConnectionPoolTest {
+
+    @Test
+    public void userTokenDependsOnCredential() {
+        assertThat(HttpClientConnectionPool.userToken(null, null), is(nullValue()));
+        String token = HttpClientConnectionPool.userToken("user", "secret");
+        assertThat(HttpClientConnectionPool.userToken("user", "secret"), is(token));
+        assertThat(HttpClientConnectionPool.userToken("user", "other"), is(not(token)));
+        assertThat(HttpClientConnectionPool.userToken("other", "secret"), is(not(token)));
+    }
+
+    @Test
+    public void authCachePerUserToken() {
+        AuthCache authCache = HttpClientConnectionPool.authCache(HttpClientConnectionPool.userToken("user", "secret"));
+        AuthCache same = HttpClientConnectionPool.authCache(HttpClientConnectionPool.userToken("user", "secret"));
+        AuthCache other = HttpClientConnectionPool.authCache(HttpClientConnectionPool.userToken("user", "other"));
+        assertThat(same, is(sameInstance(authCache)));
+        assertThat(other, is(not(sameInstance(authCache))));
+    }
+
+    @Test
+    public void keepAliveIsCapped() {
+        long max = TimeUnit.SECONDS.toMillis(HttpClientConnectionPool.IDLE_SECONDS);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        assertThat(HttpClientConnectionPool.KEEP_ALIVE.getKeepAliveDuration(response, new BasicHttpContext()), is(max));
+
+        response.setHeader("Keep-Alive", "timeout=5");
+        assertThat(
+                HttpClientConnectionPool.KEEP_ALIVE.getKeepAliveDuration(response, new BasicHttpContext()), is(5000L));
+
+        response.setHeader("Keep-Alive", "timeout=" + (HttpClientConnectionPool.IDLE_SECONDS + 60));
+        assertThat(HttpClientConnectionPool.KEEP_ALIVE.getKeepAliveDuration(response, new BasicHttpContext()), is(max));
+    }
+
+    private static void respond(HttpExchange exchange) throws IOException {
+        byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    @Test
+    public void exhaustedPoolFallsBackToConnectionOfItsOwn() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", HttpClientConnectionPoolTest::respond);
+        server.start();
+        try {
+            HttpHost target = new HttpHost(
+                    server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort(), "http");
+            HttpRoute route = new HttpRoute(target);
+            SmartCredentialsProvider credentials = new SmartCredentialsProvider(TaskListener.NULL);
+            List<PreemptiveAuthHttpClientConnection> connections = new ArrayList<>();
+            for (int i = 0; i <= HttpClientConnectionPool.MAX_PER_ROUTE; i++) {
+                PreemptiveAuthHttpClientConnection connection =
+                        new PreemptiveAuthHttpClientConnection(credentials, target.toURI() + "/repo.git/info/refs");
+                connection.setRequestMethod("GET");
+                // The response bodies are not read yet, so their pooled connections stay leased
+                assertThat(connection.getResponseCode(), is(200));
+                connections.add(connection);
+            }
+            assertThat(
+                    HttpClientConnectionPool.getManager().getStats(route).getLeased(),
+                    is(HttpClientConnectionPool.MAX_PER_ROUTE));
+            for (PreemptiveAuthHttpClientConnection connection : connections) {
+                try (InputStream in = connection.getInputStream()) {
+                    assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), is("ok"));
+                }
+            }
+            assertThat(HttpClientConnectionPool.getManager().getStats(route).getLeased(), is(0));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
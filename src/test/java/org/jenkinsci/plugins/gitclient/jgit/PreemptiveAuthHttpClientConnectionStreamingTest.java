@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.gitclient.jgit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.auth.BasicScheme;
+import org.jenkinsci.plugins.gitclient.trilead.SmartCredentialsProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreemptiveAuthHttpClientConnectionStreamingTest {
+
+    private static final class Received {
+        final boolean chunked;
+        final String authorization;
+        final int length;
+        final IOException failure;
+
+        Received(boolean chunked, String authorization, int length, IOException failure) {
+            this.chunked = chunked;
+            this.authorization = authorization;
+            this.length = length;
+            this.failure = failure;
+        }
+    }
+
+    private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+
+    private HttpServer server;
+    private HttpHost target;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        target = new HttpHost(
+                server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort(), "http");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean chunked = "chunked".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        int length = 0;
+        IOException failure = null;
+        try (InputStream body = exchange.getRequestBody()) {
+            length = body.readAllBytes().length;
+        } catch (IOException e) {
+            failure = e;
+        }
+        received.add(new Received(chunked, authorization, length, failure));
+        if (failure != null) {
+            exchange.close();
+            return;
+        }
+        if (exchange.getRequestURI().getPath().startsWith("/private/")) {
+            exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"git\"");
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+            return;
+        }
+        byte[] response = String.valueOf(length).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private String url(String path) {
+        return target.toURI() + path;
+    }
+
+    private PreemptiveAuthHttpClientConnection post(SmartCredentialsProvider credentials, String path) {
+        PreemptiveAuthHttpClientConnection connection = new PreemptiveAuthHttpClientConnection(credentials, url(path));
+        connection.setRequestMethod("POST");
+        return connection;
+    }
+
+    private int leased() {
+        return HttpClientConnectionPool.getManager()
+                .getStats(new HttpRoute(target))
+                .getLeased();
+    }
+
+    @Test
+    public void anonymousPostIsStreamed() throws Exception {
+        PreemptiveAuthHttpClientConnection connection =
+                post(new SmartCredentialsProvider(TaskListener.NULL), "/repo.git/git-upload-pack");
+        byte[] body = new byte[3 * HttpClientConnectionPool.STREAM_BUFFER_SIZE + 17];
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        assertThat(connection.getResponseCode(), is(200));
+        try (InputStream in = connection.getInputStream()) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), is(String.valueOf(body.length)));
+        }
+        Received request = received.poll(10, TimeUnit.SECONDS);
+        assertThat(request, is(notNullValue()));
+        assertThat(request.chunked, is(true));
+        assertThat(request.length, is(body.length));
+        assertThat(leased(), is(0));
+    }
+
+    @Test
+    public void abandonedBodyReleasesConnection() throws Exception {
+        PreemptiveAuthHttpClientConnection connection =
+                post(new SmartCredentialsProvider(TaskListener.NULL), "/repo.git/git-receive-pack");
+        connection.setReadTimeout(500);
+        OutputStream out = connection.getOutputStream();
+        out.write(new byte[100]);
+        // JGit failed while writing the body, it neither closes the body nor asks for the response
+        Received request = received.poll(10, TimeUnit.SECONDS);
+        assertThat(request, is(notNullValue()));
+        assertThat(request.failure, is(notNullValue()));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (leased() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(leased(), is(0));
+        assertThrows(IOException.class, () -> out.write(new byte[100]));
+        assertThrows(IOException.class, connection::getResponseCode);
+    }
+
+    @Test
+    public void unauthorizedPreemptiveRequestStopsStreaming() throws Exception {
+        SmartCredentialsProvider credentials = new SmartCredentialsProvider(TaskListener.NULL);
+        credentials.addDefaultCredentials(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "revoked", "revoked", "user", "revoked"));
+        String userToken = HttpClientConnectionPool.userToken("user", "revoked");
+        // The password was accepted by an earlier request, so the next request authenticates preemptively
+        HttpClientConnectionPool.authCache(userToken).put(target, new BasicScheme());
+
+        PreemptiveAuthHttpClientConnection connection = post(credentials, "/private/repo.git/git-upload-pack");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(new byte[1000]);
+        }
+        assertThat(connection.getResponseCode(), is(401));
+        Received request = received.poll(10, TimeUnit.SECONDS);
+        assertThat(request, is(notNullValue()));
+        assertThat(request.chunked, is(true));
+        assertThat(request.authorization, is(notNullValue()));
+        assertThat(HttpClientConnectionPool.authCache(userToken).get(target), is(nullValue()));
+
+        // Without a cached scheme the body is buffered, so that it can be sent again after the challenge
+        PreemptiveAuthHttpClientConnection retry = post(credentials, "/private/repo.git/git-upload-pack");
+        try (OutputStream out = retry.getOutputStream()) {
+            out.write(new byte[1000]);
+        }
+        assertThat(retry.getResponseCode(), is(401));
+        request = received.poll(10, TimeUnit.SECONDS);
+        assertThat(request, is(notNullValue()));
+        assertThat(request.chunked, is(false));
+        assertThat(leased(), is(0));
+    }
+}
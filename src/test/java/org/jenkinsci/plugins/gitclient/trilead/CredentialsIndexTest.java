@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.gitclient.trilead;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.util.Secret;
+import org.junit.Test;
+
+public class CredentialsIndexTest {
+
+    private final StandardUsernamePasswordCredentialsImpl org =
+            new StandardUsernamePasswordCredentialsImpl("org", Secret.fromString("org-secret"));
+    private final StandardUsernamePasswordCredentialsImpl repo =
+            new StandardUsernamePasswordCredentialsImpl("repo", Secret.fromString("repo-secret"));
+
+    @Test
+    public void exactLookupIgnoresTrailingSlashAndGitSuffix() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("https://example.com/org/repo.git", repo);
+        assertThat(index.get("https://example.com/org/repo"), is(repo));
+        assertThat(index.get("https://example.com/org/repo.git/"), is(repo));
+        assertThat(index.get("https://example.com/org"), is(nullValue()));
+        assertThat(index.get("https://example.com/org/repo/sub"), is(nullValue()));
+        assertThat(index.get(null), is(nullValue()));
+    }
+
+    @Test
+    public void closestParent() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("https://example.com/org", org);
+        index.put("https://example.com/org/repo.git", repo);
+        assertThat(
+                index.getClosest("https://example.com/org/repo.git/info/refs?service=git-upload-pack"), is(repo));
+        assertThat(index.getClosest("https://example.com/org/other.git/info/refs"), is(org));
+        assertThat(index.getClosest("https://example.org/org/repo"), is(nullValue()));
+    }
+
+    @Test
+    public void removeAndClear() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("https://example.com/org", org);
+        index.put("https://example.com/org/repo", repo);
+        assertThat(index.values(), containsInAnyOrder(org, repo));
+
+        index.put("https://example.com/org", null);
+        assertThat(index.get("https://example.com/org"), is(nullValue()));
+        assertThat(index.get("https://example.com/org/repo"), is(repo));
+
+        index.clear();
+        assertThat(index.values(), is(empty()));
+    }
+}
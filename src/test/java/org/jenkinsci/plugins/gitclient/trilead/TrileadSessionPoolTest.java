@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.gitclient.trilead;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.Session;
+import hudson.util.Secret;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.gitclient.verifier.KnownHostsFileVerifier;
+import org.jenkinsci.plugins.gitclient.verifier.ManuallyProvidedKeyVerifier;
+import org.junit.Test;
+
+public class TrileadSessionPoolTest {
+
+    private static final String VERIFIER = "verifier";
+
+    @Test
+    public void keyDependsOnCredentialSecret() {
+        StandardUsernamePasswordCredentialsImpl cred =
+                new StandardUsernamePasswordCredentialsImpl("user", Secret.fromString("first"));
+        StandardUsernamePasswordCredentialsImpl sameSecret =
+                new StandardUsernamePasswordCredentialsImpl("user", Secret.fromString("first"));
+        StandardUsernamePasswordCredentialsImpl otherSecret =
+                new StandardUsernamePasswordCredentialsImpl("user", Secret.fromString("second"));
+        String key = TrileadSessionPool.key("example.com", 22, null, VERIFIER, cred);
+        assertThat(TrileadSessionPool.key("example.com", 22, null, VERIFIER, sameSecret), is(key));
+        assertThat(TrileadSessionPool.key("example.com", 22, null, VERIFIER, otherSecret), is(not(key)));
+        assertThat(TrileadSessionPool.key("example.com", 2222, null, VERIFIER, cred), is(not(key)));
+        assertThat(TrileadSessionPool.key("example.com", 22, "git", VERIFIER, cred), is(not(key)));
+        assertThat(TrileadSessionPool.key("example.com", 22, null, "other", cred), is(not(key)));
+    }
+
+    @Test
+    public void keyDependsOnVerifiedHostKeys() {
+        String first = new ManuallyProvidedKeyVerifier("example.com ssh-ed25519 AAAAfirst").getIdentity();
+        String second = new ManuallyProvidedKeyVerifier("example.com ssh-ed25519 AAAAsecond").getIdentity();
+        assertThat(first, is(not(second)));
+        assertThat(new ManuallyProvidedKeyVerifier("example.com ssh-ed25519 AAAAfirst").getIdentity(), is(first));
+        assertThat(new KnownHostsFileVerifier().getIdentity(), is(not(first)));
+    }
+
+    private static Connection authenticatedConnection() throws IOException {
+        Connection con = mock(Connection.class);
+        when(con.isAuthenticationComplete()).thenReturn(true);
+        when(con.openSession()).thenReturn(mock(Session.class));
+        return con;
+    }
+
+    @Test
+    public void idleConnectionIsReused() throws Exception {
+        TrileadSessionPool pool = new TrileadSessionPool(TimeUnit.SECONDS.toNanos(30));
+        Connection con = authenticatedConnection();
+        pool.release("key", con);
+        assertThat(pool.acquire("other"), is(nullValue()));
+        assertThat(pool.acquire("key"), is(sameInstance(con)));
+        /* A connection is handed out to one transport at a time */
+        assertThat(pool.acquire("key"), is(nullValue()));
+        verify(con, never()).close();
+    }
+
+    @Test
+    public void expiredConnectionIsClosed() throws Exception {
+        TrileadSessionPool pool = new TrileadSessionPool(TimeUnit.MILLISECONDS.toNanos(10));
+        Connection con = authenticatedConnection();
+        pool.release("key", con);
+        Thread.sleep(50);
+        pool.closeExpired();
+        verify(con).close();
+        assertThat(pool.acquire("key"), is(nullValue()));
+
+        Connection expired = authenticatedConnection();
+        pool.release("key", expired);
+        Thread.sleep(50);
+        /* Expired before the reaper closed it */
+        assertThat(pool.acquire("key"), is(nullValue()));
+        verify(expired).close();
+    }
+
+    @Test
+    public void brokenConnectionIsDropped() throws Exception {
+        TrileadSessionPool pool = new TrileadSessionPool(TimeUnit.SECONDS.toNanos(30));
+        Connection healthy = authenticatedConnection();
+        Connection broken = authenticatedConnection();
+        when(broken.openSession()).thenThrow(new IOException("Connection reset by server"));
+        pool.release("key", healthy);
+        pool.release("key", broken);
+        /* Most recently released first, the broken connection is closed and the next one is tried */
+        assertThat(pool.acquire("key"), is(sameInstance(healthy)));
+        verify(broken).close();
+        verify(healthy, never()).close();
+    }
+
+    @Test
+    public void unauthenticatedConnectionIsNotPooled() {
+        TrileadSessionPool pool = new TrileadSessionPool(TimeUnit.SECONDS.toNanos(30));
+        pool.release("key", new Connection("example.com", 22));
+        assertThat(pool.acquire("key"), is(nullValue()));
+    }
+}
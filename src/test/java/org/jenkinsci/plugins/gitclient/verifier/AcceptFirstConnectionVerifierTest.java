@@ -13,8 +13,15 @@ import hudson.model.TaskListener;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.jenkinsci.plugins.gitclient.trilead.JGitConnection;
 import org.junit.Rule;
 import org.junit.Test;
@@ -178,6 +185,38 @@ public class AcceptFirstConnectionVerifierTest {
         assertThat(actual, hasItem(containsString(FILE_CONTENT.substring(FILE_CONTENT.indexOf(" ")))));
     }
 
+    @Test
+    public void testVerifyServerHostKeyAddsHostOnceForConcurrentConnections() throws Exception {
+        File file = new File(testFolder.getRoot(), "known_hosts");
+        AcceptFirstConnectionVerifier acceptFirstConnectionVerifier = spy(new AcceptFirstConnectionVerifier());
+        when(acceptFirstConnectionVerifier.getKnownHostsFile()).thenReturn(file);
+        byte[] hostKey = Base64.getDecoder().decode(FILE_CONTENT.substring(FILE_CONTENT.lastIndexOf(' ') + 1));
+        int connections = 8;
+        // Every verifier reads the known hosts before any connection added the host
+        List<AbstractJGitHostKeyVerifier> verifiers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            verifiers.add(acceptFirstConnectionVerifier.forJGit(TaskListener.NULL));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (AbstractJGitHostKeyVerifier verifier : verifiers) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return verifier.verifyServerHostKey("example.com", 22, "ssh-ed25519", hostKey);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS), is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(Files.readAllLines(file.toPath()).size(), is(1));
+    }
+
     /* Return true if running on a Kubernetes pod on ci.jenkins.io */
     private boolean isKubernetesCI() {
         String kubernetesPort = System.getenv("KUBERNETES_PORT");
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.gitclient.verifier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.trilead.ssh2.KnownHosts;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KnownHostsCacheTest {
+
+    private static final String KEY = "AAAAC3NzaC1lZDI1NTE5AAAAIOMqqnkVzrm0SdG6UOoqKLsabgH5C9okWi0dh2l9GKJl";
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void parsedOnceWhileUnchanged() throws Exception {
+        File file = testFolder.newFile("known_hosts");
+        Files.write(file.toPath(), ("github.com ssh-ed25519 " + KEY + "\n").getBytes(StandardCharsets.UTF_8));
+        KnownHosts parsed = KnownHostsCache.forFile(file);
+        assertThat(KnownHostsCache.forFile(file), is(sameInstance(parsed)));
+
+        Files.write(
+                file.toPath(),
+                ("gitlab.com ssh-ed25519 " + KEY + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        KnownHosts reparsed = KnownHostsCache.forFile(file);
+        assertThat(reparsed, is(not(sameInstance(parsed))));
+        byte[] key = Base64.getDecoder().decode(KEY);
+        assertThat(reparsed.verifyHostkey("gitlab.com", "ssh-ed25519", key), is(KnownHosts.HOSTKEY_IS_OK));
+    }
+
+    @Test
+    public void appendUpdatesParsedCopy() throws Exception {
+        File file = new File(testFolder.getRoot(), "ssh/known_hosts");
+        byte[] key = Base64.getDecoder().decode(KEY);
+        assertThat(KnownHostsCache.append(file, "github.com:22", "ssh-ed25519", key), is(true));
+        KnownHosts parsed = KnownHostsCache.forFile(file);
+        assertThat(parsed.verifyHostkey("github.com:22", "ssh-ed25519", key), is(KnownHosts.HOSTKEY_IS_OK));
+
+        assertThat(KnownHostsCache.append(file, "gitlab.com:22", "ssh-ed25519", key), is(false));
+        assertThat(KnownHostsCache.forFile(file), is(sameInstance(parsed)));
+        assertThat(parsed.verifyHostkey("gitlab.com:22", "ssh-ed25519", key), is(KnownHosts.HOSTKEY_IS_OK));
+        assertThat(Files.readAllLines(file.toPath()).size(), is(2));
+    }
+}